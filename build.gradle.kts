@@ -1,6 +1,7 @@
 plugins {
     java
     id("com.github.johnrengelman.shadow") version "8.1.1"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.snipr"
@@ -20,6 +21,28 @@ java {
     targetCompatibility = JavaVersion.VERSION_1_8
 }
 
+// Benchmarks compile the plugin sources together with the Hytale stand-ins in src/jmh, so they run
+// without libs/HytaleServer.jar. Classes that need the full server API are left out.
+sourceSets {
+    named("jmh") {
+        java.srcDir("src/main/java")
+        java.exclude(
+            "com/snipr/megaperformance/MegaPerformancePlugin.java",
+            "com/snipr/megaperformance/commands/**",
+            "com/snipr/megaperformance/worlds/**"
+        )
+        compileClasspath = configurations["jmhCompileClasspath"]
+        runtimeClasspath = output + configurations["jmhRuntimeClasspath"]
+    }
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+}
+
 tasks {
     shadowJar {
         archiveClassifier.set("")
@@ -0,0 +1,39 @@
+package com.hypixel.hytale.logger;
+
+/**
+ * Benchmark stand-in for the server logger: accepts every call and discards it, so benchmarks run
+ * without HytaleServer.jar and measure no logging cost.
+ */
+public class HytaleLogger {
+
+    private static final HytaleLogger INSTANCE = new HytaleLogger();
+    private static final Api API = new Api();
+
+    public static HytaleLogger forEnclosingClass() {
+        return INSTANCE;
+    }
+
+    public Api atInfo() {
+        return API;
+    }
+
+    public Api atWarning() {
+        return API;
+    }
+
+    public Api atFine() {
+        return API;
+    }
+
+    public Api atSevere() {
+        return API;
+    }
+
+    public static class Api {
+        public Api withCause(Throwable cause) {
+            return this;
+        }
+
+        public void log(String message, Object... args) { }
+    }
+}
@@ -0,0 +1,14 @@
+package com.hypixel.hytale.server.core;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/** Benchmark stand-in exposing only the shared scheduler, backed by one daemon thread. */
+public class HytaleServer {
+
+    public static final ScheduledExecutorService SCHEDULED_EXECUTOR = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "bench-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+}
@@ -0,0 +1,29 @@
+package com.hypixel.hytale.server.core;
+
+import java.awt.Color;
+
+/** Benchmark stand-in for chat messages; keeps the text so construction cost stays realistic. */
+public class Message {
+
+    private final String text;
+
+    private Message(String text) {
+        this.text = text;
+    }
+
+    public static Message raw(String text) {
+        return new Message(text);
+    }
+
+    public static Message join(Message... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Message part : parts) {
+            sb.append(part.text);
+        }
+        return new Message(sb.toString());
+    }
+
+    public Message color(Color color) {
+        return this;
+    }
+}
@@ -0,0 +1,62 @@
+package com.hypixel.hytale.server.core.event.events.player;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+
+import java.util.List;
+
+/** Benchmark stand-in for the chat event with the accessors the chat limiter uses. */
+public class PlayerChatEvent {
+
+    /** Turns a sender and content into the chat line sent to every target. */
+    public interface Formatter {
+        Message format(PlayerRef sender, String content);
+    }
+
+    public static final Formatter DEFAULT_FORMATTER = (sender, content) -> Message.raw(sender.getUsername() + ": " + content);
+
+    private final PlayerRef sender;
+    private final List<PlayerRef> targets;
+    private String content;
+    private Formatter formatter = DEFAULT_FORMATTER;
+    private boolean cancelled;
+
+    public PlayerChatEvent(PlayerRef sender, List<PlayerRef> targets, String content) {
+        this.sender = sender;
+        this.targets = targets;
+        this.content = content;
+    }
+
+    public PlayerRef getSender() {
+        return sender;
+    }
+
+    public List<PlayerRef> getTargets() {
+        return targets;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+        this.cancelled = false;
+    }
+
+    public Formatter getFormatter() {
+        return formatter;
+    }
+
+    public void setFormatter(Formatter formatter) {
+        this.formatter = formatter;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+}
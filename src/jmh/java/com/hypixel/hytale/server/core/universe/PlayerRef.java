@@ -0,0 +1,30 @@
+package com.hypixel.hytale.server.core.universe;
+
+import com.hypixel.hytale.server.core.Message;
+
+import java.util.UUID;
+
+/** Benchmark stand-in for a connected player; outgoing messages are counted and dropped. */
+public class PlayerRef {
+
+    private final String username;
+    private final UUID uuid;
+    private volatile int received;
+
+    public PlayerRef(String username, UUID uuid) {
+        this.username = username;
+        this.uuid = uuid;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public void sendMessage(Message message) {
+        received++;
+    }
+}
@@ -0,0 +1,27 @@
+package com.hypixel.hytale.server.core.universe.world;
+
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+/** Benchmark stand-in for a world: owns one entity store and runs queued work inline. */
+public class World {
+
+    private final String name;
+    private final EntityStore entityStore;
+
+    public World(String name, EntityStore entityStore) {
+        this.name = name;
+        this.entityStore = entityStore;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public EntityStore getEntityStore() {
+        return entityStore;
+    }
+
+    public void execute(Runnable task) {
+        task.run();
+    }
+}
@@ -0,0 +1,22 @@
+package com.hypixel.hytale.server.core.universe.world.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Benchmark stand-in for the entity store, shaped the way {@code EntityAccess} probes it: a live
+ * collection from {@code getAllEntities} and a {@code removeEntity} hook.
+ */
+public class EntityStore {
+
+    private final List<Object> entities = new ArrayList<>();
+
+    public Collection<Object> getAllEntities() {
+        return entities;
+    }
+
+    public void removeEntity(Object entity) {
+        entities.remove(entity);
+    }
+}
@@ -0,0 +1,55 @@
+package com.snipr.megaperformance.async;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caller-side latency of {@link LaneExecutor#submit} from several producer threads, sampled so the
+ * results carry a percentile distribution. Tasks are no-ops; a full lane shows up as fast rejections
+ * (the boolean result), which is the behaviour callers actually see under overload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ExecutorSubmitBenchmark {
+
+    private static final Runnable NO_OP = () -> { };
+
+    @Param({"SAVE_IO", "ANALYTICS"})
+    public Lane lane;
+
+    private LaneExecutor executor;
+
+    @Setup
+    public void setUp() {
+        executor = new LaneExecutor(2, 4096, false, HytaleLogger.forEnclosingClass());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.drain(1000);
+    }
+
+    @Benchmark
+    public boolean submit() {
+        return executor.submit(lane, NO_OP);
+    }
+}
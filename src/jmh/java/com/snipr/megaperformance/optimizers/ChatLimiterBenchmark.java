@@ -0,0 +1,92 @@
+package com.snipr.megaperformance.optimizers;
+
+import com.hypixel.hytale.server.core.event.events.player.PlayerChatEvent;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.snipr.megaperformance.config.MegaPerformanceConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChatBurstOptimizer} throughput from many threads. With {@code shared} every thread chats as
+ * the same small set of players, so the token buckets themselves are contended; with {@code private}
+ * each thread has its own players and only the player map is shared. Duplicate batching is off so the
+ * scheduler is not involved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ChatLimiterBenchmark {
+
+    private static final int PLAYERS_PER_SET = 16;
+
+    @Param({"private", "shared"})
+    public String players;
+
+    private final ChatBurstOptimizer limiter = new ChatBurstOptimizer();
+    private final MegaPerformanceConfig.Network cfg = new MegaPerformanceConfig.Network();
+    private PlayerChatEvent[] sharedEvents;
+
+    @Setup
+    public void setUp() {
+        cfg.duplicateWindowMs = 0;
+        sharedEvents = newEvents("shared");
+    }
+
+    @State(Scope.Thread)
+    public static class Sender {
+        private PlayerChatEvent[] events;
+        private int next;
+
+        @Setup
+        public void setUp(ChatLimiterBenchmark bench) {
+            events = "shared".equals(bench.players)
+                ? bench.sharedEvents
+                : newEvents(Thread.currentThread().getName());
+        }
+
+        PlayerChatEvent next() {
+            PlayerChatEvent event = events[next];
+            next = (next + 1) % events.length;
+            event.setCancelled(false);
+            return event;
+        }
+    }
+
+    @Benchmark
+    public boolean send(Sender sender) {
+        PlayerChatEvent event = sender.next();
+        limiter.apply(event, cfg);
+        return event.isCancelled();
+    }
+
+    private static PlayerChatEvent[] newEvents(String prefix) {
+        List<PlayerRef> everyone = new ArrayList<>();
+        PlayerChatEvent[] events = new PlayerChatEvent[PLAYERS_PER_SET];
+        for (int i = 0; i < events.length; i++) {
+            PlayerRef player = new PlayerRef(prefix + "-" + i, UUID.randomUUID());
+            everyone.add(player);
+            events[i] = new PlayerChatEvent(player, Collections.unmodifiableList(everyone), "hello from " + i);
+        }
+        return events;
+    }
+}
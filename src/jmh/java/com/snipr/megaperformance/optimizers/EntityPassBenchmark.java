@@ -0,0 +1,122 @@
+package com.snipr.megaperformance.optimizers;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.snipr.megaperformance.config.MegaPerformanceConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full {@link EntityOptimizer} pass (scan, sweep, activation) over a world of the given size. The
+ * soft cap is set high so the population stays constant, hibernation is off and far entities are re-read
+ * every pass, so every invocation measures the same work; run with the gc profiler to read allocation per
+ * pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityPassBenchmark {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+    private static final int ENTITIES_PER_CHUNK = 20;
+    private static final int PLAYERS = 8;
+
+    @Param({"1000", "10000", "100000"})
+    public int entities;
+
+    private World world;
+    private EntityOptimizer optimizer;
+    private MegaPerformanceConfig.Entities cfg;
+    private MegaPerformanceConfig.Bundled bundled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        EntityStore store = new EntityStore();
+        world = new World("bench", store);
+        Random random = new Random(42);
+        int side = (int) Math.ceil(Math.sqrt(entities / (double) ENTITIES_PER_CHUNK)) << ChunkEntityIndex.CHUNK_SHIFT;
+        Collection<Object> live = store.getAllEntities();
+        for (int i = 0; i < entities; i++) {
+            live.add(new BenchMob(random.nextDouble() * side, random.nextDouble() * side));
+        }
+        for (int i = 0; i < PLAYERS; i++) {
+            live.add(new BenchPlayer(random.nextDouble() * side, random.nextDouble() * side));
+        }
+
+        cfg = new MegaPerformanceConfig.Entities();
+        cfg.softCapPerChunk = Integer.MAX_VALUE / 2;
+        cfg.hibernateAfterSeconds = 0;
+        cfg.distantAiSkipEvery = 1;
+        bundled = new MegaPerformanceConfig.Bundled();
+        optimizer = new EntityOptimizer(0);
+        pass();
+    }
+
+    @Benchmark
+    public void pass() {
+        optimizer.runSlice(world, cfg, bundled, 0, System.nanoTime() + TimeUnit.MINUTES.toNanos(1), LOGGER);
+    }
+
+    public static final class Vector {
+        public final double x;
+        public final double z;
+
+        Vector(double x, double z) {
+            this.x = x;
+            this.z = z;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getZ() {
+            return z;
+        }
+    }
+
+    public static class BenchMob {
+        private final Vector position;
+        private boolean aiEnabled = true;
+
+        BenchMob(double x, double z) {
+            this.position = new Vector(x, z);
+        }
+
+        public Vector getPosition() {
+            return position;
+        }
+
+        public String getTypeId() {
+            return "bench_mob";
+        }
+
+        public void setAiEnabled(boolean enabled) {
+            this.aiEnabled = enabled;
+        }
+    }
+
+    public static final class BenchPlayer extends BenchMob {
+        BenchPlayer(double x, double z) {
+            super(x, z);
+        }
+    }
+}
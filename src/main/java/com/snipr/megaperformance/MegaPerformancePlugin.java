@@ -8,22 +8,31 @@ import com.hypixel.hytale.server.core.command.system.CommandRegistry;
 import com.hypixel.hytale.server.core.event.events.player.PlayerChatEvent;
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
-import com.hypixel.hytale.server.core.universe.Universe;
+import com.snipr.megaperformance.async.LaneExecutor;
+import com.snipr.megaperformance.config.ConfigDiff;
+import com.snipr.megaperformance.config.ConfigWatcher;
 import com.snipr.megaperformance.config.MegaPerformanceConfig;
+import com.snipr.megaperformance.metrics.FlightRecorder;
+import com.snipr.megaperformance.metrics.PerfStats;
+import com.snipr.megaperformance.network.OutboundCoalescer;
+import com.snipr.megaperformance.network.PacketHooks;
+import com.snipr.megaperformance.network.ParticleCuller;
 import com.snipr.megaperformance.optimizers.ChatBurstOptimizer;
-import com.snipr.megaperformance.optimizers.EntityOptimizer;
 import com.snipr.megaperformance.optimizers.ParticleOptimizer;
 import com.snipr.megaperformance.commands.MegaperfReloadCommand;
+import com.snipr.megaperformance.worlds.HotspotRecorder;
+import com.snipr.megaperformance.worlds.SavePipeline;
+import com.snipr.megaperformance.worlds.WorldRegistry;
 
 import javax.annotation.Nonnull;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.FileReader;
+import java.util.EnumSet;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import com.google.gson.stream.JsonReader;
 
 public class MegaPerformancePlugin extends JavaPlugin {
@@ -33,16 +42,33 @@ public class MegaPerformancePlugin extends JavaPlugin {
     private static final String CONFIG_FILE_NAME = "config.json";
 
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    private MegaPerformanceConfig config;
+    /**
+     * Current config snapshot. Always a private deep copy of what was read, published whole on reload and
+     * never mutated afterwards, so consumers may cache work keyed on the snapshot's identity.
+     */
+    private final AtomicReference<MegaPerformanceConfig> config = new AtomicReference<>();
+    private final Object reloadLock = new Object();
 
-    private ThreadPoolExecutor asyncExecutor;
-    private ScheduledFuture<?> autosaveTask;
+    private static final long EXECUTOR_DRAIN_MS = 10_000;
+
+    private volatile LaneExecutor asyncExecutor;
     private ScheduledFuture<?> metricsTask;
-    private ScheduledFuture<?> entityTask;
+    private ScheduledFuture<?> housekeepingTask;
+    private ScheduledFuture<?> pressureTask;
 
-    private final EntityOptimizer entityOptimizer = new EntityOptimizer();
+    private final WorldRegistry worldRegistry = new WorldRegistry(LOGGER);
+    private final SavePipeline savePipeline = new SavePipeline(worldRegistry, () -> asyncExecutor, LOGGER);
+    private final HotspotRecorder hotspotRecorder =
+        new HotspotRecorder(worldRegistry, () -> asyncExecutor, new File(CONFIG_FOLDER_NAME), LOGGER);
+    private final FlightRecorder flightRecorder =
+        new FlightRecorder(worldRegistry, () -> asyncExecutor, new File(CONFIG_FOLDER_NAME), LOGGER);
     private final ChatBurstOptimizer chatOptimizer = new ChatBurstOptimizer();
     private final ParticleOptimizer particleOptimizer = new ParticleOptimizer();
+    private final PacketHooks packetHooks = new PacketHooks();
+    private final ParticleCuller particleCuller = new ParticleCuller(particleOptimizer);
+    private final OutboundCoalescer outboundCoalescer = new OutboundCoalescer();
+    private final ConfigWatcher configWatcher = new ConfigWatcher(
+        new File(CONFIG_FOLDER_NAME).toPath(), CONFIG_FILE_NAME, this::reloadConfigFromDisk, LOGGER);
 
     public MegaPerformancePlugin(@Nonnull JavaPluginInit init) {
         super(init);
@@ -51,88 +77,84 @@ public class MegaPerformancePlugin extends JavaPlugin {
     @Override
     protected void setup() {
         super.setup();
-        this.config = loadConfig();
+        MegaPerformanceConfig cfg = loadConfig().copy();
+        config.set(cfg);
         initAsyncExecutor();
         scheduleAutosave();
         scheduleLightMetrics();
+        hotspotRecorder.start(cfg.world);
+        flightRecorder.start(cfg.recorder);
         registerReloadCommand();
         registerChatOptimizer();
-        scheduleEntityOptimizer();
-        particleOptimizer.applyScalar(config.particles, LOGGER);
-        LOGGER.atInfo().log("MegaPerformance initialized with defaults: %s", config);
+        scheduleHousekeeping();
+        registerPacketStages();
+        worldRegistry.start(cfg);
+        particleOptimizer.setLoadPressure(worldRegistry::peakPressure);
+        particleOptimizer.applyScalar(cfg.particles, LOGGER);
+        schedulePressureRefresh();
+        configWatcher.start();
+        LOGGER.atInfo().log("MegaPerformance initialized with defaults: %s", cfg);
     }
 
     @Override
     protected void shutdown() {
+        configWatcher.stop();
         cancelScheduledTasks();
+        worldRegistry.shutdown();
         closeAsyncExecutor();
         super.shutdown();
     }
 
+    public WorldRegistry getWorldRegistry() {
+        return worldRegistry;
+    }
+
+    public FlightRecorder getFlightRecorder() {
+        return flightRecorder;
+    }
+
     private void initAsyncExecutor() {
-        int threads = Math.max(1, config.async.workerThreads);
-        int maxQueue = Math.max(64, config.async.maxQueue);
-        asyncExecutor = new ThreadPoolExecutor(
-            threads,
-            threads,
-            60L,
-            TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(maxQueue),
-            runnable -> {
-                Thread t = new Thread(runnable);
-                t.setName("MegaPerf-Worker");
-                t.setDaemon(true);
-                return t;
-            },
-            new ThreadPoolExecutor.CallerRunsPolicy()
-        );
+        MegaPerformanceConfig.Async cfg = config.get().async;
+        int threads = Math.max(1, cfg.workerThreads);
+        int maxQueue = Math.max(64, cfg.maxQueue);
+        asyncExecutor = new LaneExecutor(threads, maxQueue, cfg.virtualThreads, LOGGER);
     }
 
     private void scheduleAutosave() {
-        int minutes = Math.max(1, config.world.autosaveMinutes);
-        if (autosaveTask != null) {
-            autosaveTask.cancel(false);
-        }
-        autosaveTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleWithFixedDelay(() -> {
-            try {
-                if (Universe.get() == null || Universe.get().getDefaultWorld() == null) {
-                    LOGGER.atInfo().log("[MegaPerf] Skipping backup; no default world loaded yet");
-                    return;
-                }
-                Universe.get().runBackup().exceptionally(throwable -> {
-                    LOGGER.atWarning().withCause(throwable).log("Autosave/backup failed");
-                    return null;
-                });
-            } catch (Exception e) {
-                LOGGER.atWarning().withCause(e).log("Error triggering autosave/backup");
-            }
-        }, minutes, minutes, TimeUnit.MINUTES);
+        savePipeline.start(config.get().world);
+    }
+
+    private void registerChatOptimizer() {
+        this.getEventRegistry().registerGlobal(
+            PlayerChatEvent.class,
+            event -> chatOptimizer.apply(event, config.get().network)
+        );
     }
 
-    private void scheduleEntityOptimizer() {
-        int aiSkipEvery = Math.max(1, config.entities.distantAiSkipEvery);
-        int softCap = Math.max(1, config.entities.softCapPerChunk);
-        if (entityTask != null) {
-            entityTask.cancel(false);
+    private void registerPacketStages() {
+        packetHooks.addStage(particleCuller);
+        packetHooks.addStage(outboundCoalescer);
+        if (packetHooks.install(LOGGER)) {
+            outboundCoalescer.start(config.get().network);
         }
-        entityTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleWithFixedDelay(() -> {
+    }
+
+    private void scheduleHousekeeping() {
+        housekeepingTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleWithFixedDelay(() -> {
             try {
-                Universe.get().getDefaultWorld().execute(() -> entityOptimizer.tick(
-                    Universe.get().getDefaultWorld(),
-                    softCap,
-                    aiSkipEvery,
-                    config.bundled.aggressiveTrimming,
-                    LOGGER
-                ));
+                chatOptimizer.evictIdle();
+                particleCuller.evictIdle();
             } catch (Exception ignored) { }
-        }, 0, 1, TimeUnit.SECONDS);
+        }, 1, 1, TimeUnit.MINUTES);
     }
 
-    private void registerChatOptimizer() {
-        this.getEventRegistry().registerGlobal(
-            PlayerChatEvent.class,
-            event -> chatOptimizer.applyFormatter(event, config.network)
-        );
+    /** Samples world pressure once per tick so particle packets never walk the world sessions. */
+    private void schedulePressureRefresh() {
+        pressureTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleAtFixedRate(() -> {
+            try {
+                particleOptimizer.refreshPressure();
+            } catch (Exception ignored) { }
+        }, ParticleOptimizer.PRESSURE_REFRESH_MS, ParticleOptimizer.PRESSURE_REFRESH_MS, TimeUnit.MILLISECONDS);
     }
 
     private void registerReloadCommand() {
@@ -143,9 +165,11 @@ public class MegaPerformancePlugin extends JavaPlugin {
     private void scheduleLightMetrics() {
         metricsTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleWithFixedDelay(() -> {
             try {
-                int queued = asyncExecutor != null ? asyncExecutor.getQueue().size() : 0;
-                long completed = asyncExecutor != null ? asyncExecutor.getCompletedTaskCount() : 0;
-                LOGGER.atInfo().log("[MegaPerf] async queued=%d completed=%d", queued, completed);
+                LaneExecutor executor = asyncExecutor;
+                int queued = executor != null ? executor.queuedCount() : 0;
+                long completed = executor != null ? executor.completedCount() : 0;
+                LOGGER.atInfo().log("[MegaPerf] async queued=%d completed=%d pressure=%.2f particles=%.2f",
+                    queued, completed, worldRegistry.peakPressure(), particleOptimizer.getEffectiveScalar());
             } catch (Exception ignored) { }
         }, 1, 30, TimeUnit.SECONDS);
     }
@@ -161,11 +185,8 @@ public class MegaPerformancePlugin extends JavaPlugin {
             return defaults;
         }
 
-        try (FileReader fr = new FileReader(file)) {
-            JsonReader reader = new JsonReader(fr);
-            reader.setLenient(true);
-            MegaPerformanceConfig loaded = gson.fromJson(reader, MegaPerformanceConfig.class);
-            return loaded != null ? loaded : new MegaPerformanceConfig();
+        try {
+            return readConfig(file);
         } catch (Exception e) {
             LOGGER.atWarning().withCause(e).log("Failed to read config, using defaults");
             MegaPerformanceConfig fallback = new MegaPerformanceConfig();
@@ -174,6 +195,15 @@ public class MegaPerformancePlugin extends JavaPlugin {
         }
     }
 
+    private MegaPerformanceConfig readConfig(File file) throws IOException {
+        try (FileReader fr = new FileReader(file)) {
+            JsonReader reader = new JsonReader(fr);
+            reader.setLenient(true);
+            MegaPerformanceConfig loaded = gson.fromJson(reader, MegaPerformanceConfig.class);
+            return loaded != null ? loaded : new MegaPerformanceConfig();
+        }
+    }
+
     private void persistConfig(File file, MegaPerformanceConfig cfg) {
         try (FileWriter writer = new FileWriter(file)) {
             writer.write(buildConfigWithComments(cfg));
@@ -186,46 +216,117 @@ public class MegaPerformancePlugin extends JavaPlugin {
         return "{\n" +
             "  \"tick\": {\n" +
             "    \"maxCatchupMillis\": " + cfg.tick.maxCatchupMillis + ", // Options: 0 (no catchup), 25 (gentler), 50 (current)\n" +
-            "    \"jitterClampMs\": " + cfg.tick.jitterClampMs + " // Options: 0 (no clamp), 5 (tight), 10 (current)\n" +
+            "    \"jitterClampMs\": " + cfg.tick.jitterClampMs + ", // Options: 0 (no clamp), 5 (tight), 10 (current)\n" +
+            "    \"optimizerBudgetMicros\": " + cfg.tick.optimizerBudgetMicros + " // Options: 500 (tight), 2000 (current), 5000 (faster trims)\n" +
             "  },\n" +
             "  \"async\": {\n" +
             "    \"workerThreads\": " + cfg.async.workerThreads + ", // Options: 1 (minimal), 2 (current), 4 (busier CPUs)\n" +
-            "    \"maxQueue\": " + cfg.async.maxQueue + " // Options: 128 (strict), 512 (current), 1024 (burstier)\n" +
+            "    \"maxQueue\": " + cfg.async.maxQueue + ", // Options: 128 (strict), 512 (current), 1024 (burstier); per lane\n" +
+            "    \"virtualThreads\": " + cfg.async.virtualThreads + " // Options: false (current), true (virtual-thread workers when the JVM supports them)\n" +
             "  },\n" +
             "  \"entities\": {\n" +
             "    \"softCapPerChunk\": " + cfg.entities.softCapPerChunk + ", // Options: 20 (tighter), 35 (current), 50 (looser)\n" +
-            "    \"distantAiSkipEvery\": " + cfg.entities.distantAiSkipEvery + " // Options: 2 (more AI), 4 (current), 8 (fewer AI ticks)\n" +
+            "    \"distantAiSkipEvery\": " + cfg.entities.distantAiSkipEvery + ", // Options: 2 (more AI), 4 (current), 8 (fewer AI ticks)\n" +
+            "    \"nearRadius\": " + cfg.entities.nearRadius + ", // Options: 16 (tight), 32 (current), 48 (wider fully-live zone)\n" +
+            "    \"midRadius\": " + cfg.entities.midRadius + ", // Options: 64 (tight), 96 (current), 128 (wider)\n" +
+            "    \"hibernateAfterSeconds\": " + cfg.entities.hibernateAfterSeconds + ", // Options: 0 (off), 120 (eager), 300 (current), 900 (lazy); freeze chunks with no player within midRadius\n" +
+            "    \"mergeItems\": " + cfg.entities.mergeItems + ", // Options: true (current, fold nearby drops into one stack), false (off)\n" +
+            "    \"itemMergeRadius\": " + cfg.entities.itemMergeRadius + ", // Options: 1.0 (tight), 1.5 (current), 3.0 (wider); blocks\n" +
+            "    // Trim weight per entity type (default 1.0): above 1 keeps that type longer, below 1 trims it first, 0 never trims it\n" +
+            "    \"typeWeights\": " + gson.toJson(cfg.entities.typeWeights) + ",\n" +
+            "    // Entity types that are never trimmed, e.g. [\"horse\", \"villager\"]\n" +
+            "    \"protectedTypes\": " + gson.toJson(cfg.entities.protectedTypes) + ",\n" +
+            "    // Rules by world, type and block region; unset fields keep the value above, later rules win, region rules win over the rest.\n" +
+            "    // Fields: world, types (\"name*\" = prefix), region {minX, minZ, maxX, maxZ}, maxPerChunk, distantAiSkipEvery, trimWeight, protect\n" +
+            "    // e.g. [{\"world\": \"default\", \"types\": [\"chicken\"], \"maxPerChunk\": 12}, {\"region\": {\"minX\": -256, \"minZ\": -256, \"maxX\": 255, \"maxZ\": 255}, \"protect\": true}]\n" +
+            "    \"policies\": " + gson.toJson(cfg.entities.policies) + "\n" +
             "  },\n" +
             "  \"network\": {\n" +
-            "    \"packetBurstLimit\": " + cfg.network.packetBurstLimit + ", // Options: 128 (strict), 256 (current), 512 (looser)\n" +
-            "    \"coalesceChatMs\": " + cfg.network.coalesceChatMs + " // Options: 0 (off), 50 (tighter), 75 (current)\n" +
+            "    \"packetBurstLimit\": " + cfg.network.packetBurstLimit + ", // Options: 0 (off), 128 (strict), 256 (current), 512 (looser); per connection per tick\n" +
+            "    \"outboundCoalescing\": " + cfg.network.outboundCoalescing + ", // Options: true (merge + batch per tick), false (off)\n" +
+            "    \"coalesceChatMs\": " + cfg.network.coalesceChatMs + ", // Options: 0 (off), 50 (tighter), 75 (current); min gap per player\n" +
+            "    \"chatBurstCapacity\": " + cfg.network.chatBurstCapacity + ", // Options: 2 (strict), 4 (current), 8 (chatty servers)\n" +
+            "    \"chatRefillPerSecond\": " + cfg.network.chatRefillPerSecond + ", // Options: 0.5 (strict), 1.0 (current), 2.0 (looser)\n" +
+            "    \"duplicateWindowMs\": " + cfg.network.duplicateWindowMs + " // Options: 0 (off), 3000 (current), 10000 (heavier batching)\n" +
             "  },\n" +
             "  \"world\": {\n" +
             "    \"autosaveMinutes\": " + cfg.world.autosaveMinutes + ", // Options: 5 (frequent), 10 (current), 30 (light)\n" +
-            "    \"staggerSaves\": " + cfg.world.staggerSaves + " // Options: true (current), false (single burst)\n" +
+            "    \"staggerSaves\": " + cfg.world.staggerSaves + ", // Options: true (current), false (single burst)\n" +
+            "    \"maxConcurrentSaves\": " + cfg.world.maxConcurrentSaves + ", // Options: 1 (current, gentlest I/O), 2 (faster cycles)\n" +
+            "    \"hotspotSnapshotMinutes\": " + cfg.world.hotspotSnapshotMinutes + " // Options: 0 (off), 5 (current), 15 (lighter); appends to hotspots.jsonl\n" +
             "  },\n" +
             "  \"particles\": {\n" +
             "    \"densityScalar\": " + cfg.particles.densityScalar + ", // Options: 0.6 (low), 0.85 (current), 1.0 (full)\n" +
-            "    \"applyToProjectiles\": " + cfg.particles.applyToProjectiles + " // Options: true (current), false (leave projectiles untouched)\n" +
+            "    \"applyToProjectiles\": " + cfg.particles.applyToProjectiles + ", // Options: true (current), false (leave projectile trails untouched)\n" +
+            "    \"viewDistance\": " + cfg.particles.viewDistance + ", // Options: 0 (off), 48 (tight), 64 (current), 96 (wider)\n" +
+            "    \"maxPerPlayerTick\": " + cfg.particles.maxPerPlayerTick + " // Options: 0 (unlimited), 32 (strict), 64 (current), 128 (looser)\n" +
             "  },\n" +
             "  \"bundled\": {\n" +
             "    \"aggressiveTrimming\": " + cfg.bundled.aggressiveTrimming + ", // Options: false (current), true (heavier culling)\n" +
             "    \"lowAiDepth\": " + cfg.bundled.lowAiDepth + " // Options: false (current), true (lighter AI for perf)\n" +
-            "  }\n" +
+            "  },\n" +
+            "  \"recorder\": {\n" +
+            "    \"sampleSeconds\": " + cfg.recorder.sampleSeconds + ", // Options: 0 (off), 1 (current), 5 (lighter); timeline.bin sample period\n" +
+            "    \"retentionHours\": " + cfg.recorder.retentionHours + " // Options: 6 (small file), 24 (current, ~5.5 MiB at 1s), 72 (longer history)\n" +
+            "  },\n" +
+            "  // Per-world overrides by world name, e.g. {\"lobby\": {\"softCapPerChunk\": 15, \"lowAiDepth\": true}}\n" +
+            "  \"worldOverrides\": " + gson.toJson(cfg.worldOverrides) + "\n" +
             "}\n";
     }
 
-    public synchronized boolean reloadConfigFromDisk() {
+    /**
+     * Re-reads the config file and restarts only the subsystems whose section changed; everything else
+     * keeps running untouched. Reloads are serialized: a call that arrives while another is applying
+     * waits for it, then reads the file itself, so the result it returns is always that of a reload which
+     * saw the file as it was when the call was made. An unreadable file (for example one caught mid-save)
+     * leaves the current snapshot in place.
+     */
+    public boolean reloadConfigFromDisk() {
+        synchronized (reloadLock) {
+            return applyReload();
+        }
+    }
+
+    private boolean applyReload() {
+        MegaPerformanceConfig next;
         try {
-            cancelScheduledTasks();
-            closeAsyncExecutor();
-            this.config = loadConfig();
-            initAsyncExecutor();
-            scheduleAutosave();
-            scheduleLightMetrics();
-            scheduleEntityOptimizer();
-            particleOptimizer.applyScalar(config.particles, LOGGER);
-            LOGGER.atInfo().log("Reloaded MegaPerformance config successfully");
+            next = readConfig(new File(CONFIG_FOLDER_NAME, CONFIG_FILE_NAME));
+        } catch (Exception e) {
+            LOGGER.atWarning().withCause(e).log("Failed to read MegaPerformance config; keeping current settings");
+            return false;
+        }
+        EnumSet<ConfigDiff.Section> changed = ConfigDiff.between(config.get(), next);
+        if (changed.isEmpty()) return true;
+        next = next.copy();
+        config.set(next);
+        try {
+            if (changed.contains(ConfigDiff.Section.ASYNC)) {
+                LaneExecutor previous = asyncExecutor;
+                initAsyncExecutor();
+                if (previous != null) {
+                    // Let queued saves finish in the background instead of dropping them.
+                    previous.shutdown();
+                }
+            }
+            if (changed.contains(ConfigDiff.Section.WORLD)) {
+                scheduleAutosave();
+                hotspotRecorder.start(next.world);
+            }
+            if (changed.contains(ConfigDiff.Section.NETWORK) && packetHooks.isInstalled()) {
+                outboundCoalescer.start(next.network);
+            }
+            if (changed.contains(ConfigDiff.Section.TICK) || changed.contains(ConfigDiff.Section.ENTITIES)
+                || changed.contains(ConfigDiff.Section.BUNDLED) || changed.contains(ConfigDiff.Section.WORLD_OVERRIDES)) {
+                worldRegistry.applyConfig(next);
+            }
+            if (changed.contains(ConfigDiff.Section.PARTICLES)) {
+                particleOptimizer.applyScalar(next.particles, LOGGER);
+            }
+            if (changed.contains(ConfigDiff.Section.RECORDER)) {
+                flightRecorder.start(next.recorder);
+            }
+            PerfStats.RELOADS.increment();
+            LOGGER.atInfo().log("Reloaded MegaPerformance config (changed: %s)", changed);
             return true;
         } catch (Exception e) {
             LOGGER.atWarning().withCause(e).log("Failed to reload MegaPerformance config");
@@ -234,24 +335,30 @@ public class MegaPerformancePlugin extends JavaPlugin {
     }
 
     private void cancelScheduledTasks() {
-        if (autosaveTask != null) {
-            autosaveTask.cancel(false);
-            autosaveTask = null;
-        }
+        savePipeline.stop();
+        hotspotRecorder.stop();
+        flightRecorder.stop();
+        outboundCoalescer.stop();
         if (metricsTask != null) {
             metricsTask.cancel(false);
             metricsTask = null;
         }
-        if (entityTask != null) {
-            entityTask.cancel(false);
-            entityTask = null;
+        if (housekeepingTask != null) {
+            housekeepingTask.cancel(false);
+            housekeepingTask = null;
+        }
+        if (pressureTask != null) {
+            pressureTask.cancel(false);
+            pressureTask = null;
         }
     }
 
+    /** Drains queued work (in-flight saves included) for up to {@link #EXECUTOR_DRAIN_MS}. */
     private void closeAsyncExecutor() {
-        if (asyncExecutor != null) {
-            asyncExecutor.shutdownNow();
-            asyncExecutor = null;
+        LaneExecutor executor = asyncExecutor;
+        asyncExecutor = null;
+        if (executor != null) {
+            executor.drain(EXECUTOR_DRAIN_MS);
         }
     }
 }
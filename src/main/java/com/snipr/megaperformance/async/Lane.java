@@ -0,0 +1,24 @@
+package com.snipr.megaperformance.async;
+
+import com.snipr.megaperformance.metrics.Histogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Priority lanes of the {@link LaneExecutor}, highest priority first. Each lane carries its own
+ * process-wide counters so they survive executor rebuilds on reload.
+ */
+public enum Lane {
+    SAVE_IO("save io"),
+    OPTIMIZER_PREP("optimizer prep"),
+    ANALYTICS("analytics");
+
+    public final Histogram queueWait;
+    public final Histogram run;
+    public final LongAdder rejected = new LongAdder();
+
+    Lane(String label) {
+        this.queueWait = new Histogram("executor " + label + " queue wait", Histogram.Unit.NANOS);
+        this.run = new Histogram("executor " + label + " run", Histogram.Unit.NANOS);
+    }
+}
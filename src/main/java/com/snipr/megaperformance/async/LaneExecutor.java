@@ -0,0 +1,180 @@
+package com.snipr.megaperformance.async;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded executor with priority lanes shared by all workers. Every worker scans the lanes in priority
+ * order and takes the first queued task, so saves are never stuck behind optimizer prep or analytics.
+ * A full lane rejects the task instead of running it on the caller (which may be a world thread); only
+ * tasks submitted from one of this executor's own workers fall back to running inline. Shutdown stops
+ * intake and lets queued work drain.
+ */
+public class LaneExecutor {
+
+    private static final long IDLE_POLL_MS = 500;
+    private static final Lane[] LANES = Lane.values();
+    private static final ThreadLocal<LaneExecutor> CURRENT = new ThreadLocal<>();
+
+    private final HytaleLogger logger;
+    private final List<ArrayBlockingQueue<Task>> queues;
+    private final Semaphore available = new Semaphore(0);
+    private final Thread[] workers;
+    private final AtomicLong completed = new AtomicLong();
+    private volatile boolean accepting = true;
+
+    public LaneExecutor(int threads, int queueCapacity, boolean virtualThreads, HytaleLogger logger) {
+        this.logger = logger;
+        this.queues = new ArrayList<>(LANES.length);
+        for (int i = 0; i < LANES.length; i++) {
+            queues.add(new ArrayBlockingQueue<>(Math.max(1, queueCapacity)));
+        }
+        this.workers = new Thread[Math.max(1, threads)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = newThread(this::work, "MegaPerf-Worker-" + i, virtualThreads);
+            workers[i].start();
+        }
+    }
+
+    /** Queues {@code task} on {@code lane}; returns false if the lane is full or the executor is shut down. */
+    public boolean submit(Lane lane, Runnable task) {
+        if (!accepting) {
+            lane.rejected.increment();
+            return false;
+        }
+        Task t = new Task(lane, task, System.nanoTime());
+        ArrayBlockingQueue<Task> queue = queues.get(lane.ordinal());
+        if (queue.offer(t)) {
+            available.release();
+            // Shutdown may have raced the offer and let the workers exit on empty lanes; take the task
+            // back so it is not stranded. If a worker already took it, it runs as normal.
+            if (!accepting && queue.remove(t)) {
+                lane.rejected.increment();
+                return false;
+            }
+            return true;
+        }
+        if (CURRENT.get() == this) {
+            run(t);
+            return true;
+        }
+        lane.rejected.increment();
+        return false;
+    }
+
+    public int queuedCount() {
+        int total = 0;
+        for (ArrayBlockingQueue<Task> q : queues) {
+            total += q.size();
+        }
+        return total;
+    }
+
+    public long completedCount() {
+        return completed.get();
+    }
+
+    /** Stops accepting work; workers exit once every lane is empty. Does not block. */
+    public void shutdown() {
+        accepting = false;
+        available.release(workers.length);
+    }
+
+    /** {@link #shutdown()} and wait up to {@code timeoutMs} for queued work to finish. */
+    public boolean drain(long timeoutMs) {
+        shutdown();
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Thread worker : workers) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) break;
+            try {
+                worker.join(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int left = queuedCount();
+        if (left > 0) {
+            logger.atWarning().log("[MegaPerf] Executor drain timed out with %d tasks still queued", left);
+        }
+        return left == 0;
+    }
+
+    private void work() {
+        CURRENT.set(this);
+        while (true) {
+            try {
+                if (available.tryAcquire(IDLE_POLL_MS, TimeUnit.MILLISECONDS)) {
+                    Task t = poll();
+                    if (t != null) {
+                        run(t);
+                        continue;
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!accepting && queuedCount() == 0) return;
+        }
+    }
+
+    /** Highest-priority queued task, or null when every lane is empty. */
+    private Task poll() {
+        for (int i = 0; i < queues.size(); i++) {
+            Task t = queues.get(i).poll();
+            if (t != null) return t;
+        }
+        return null;
+    }
+
+    private void run(Task t) {
+        long startedAt = System.nanoTime();
+        t.lane.queueWait.record(startedAt - t.queuedAt);
+        try {
+            t.task.run();
+        } catch (Throwable e) {
+            logger.atWarning().withCause(e).log("[MegaPerf] Async task failed on lane %s", t.lane);
+        } finally {
+            t.lane.run.recordSince(startedAt);
+            completed.incrementAndGet();
+        }
+    }
+
+    private static Thread newThread(Runnable body, String name, boolean virtual) {
+        if (virtual) {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                builder = builderType.getMethod("name", String.class).invoke(builder, name);
+                Method unstarted = builderType.getMethod("unstarted", Runnable.class);
+                return (Thread) unstarted.invoke(builder, body);
+            } catch (Exception ignored) {
+                // Runtime without virtual threads; fall through to a platform daemon thread.
+            }
+        }
+        Thread t = new Thread(body);
+        t.setName(name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private static final class Task {
+        final Lane lane;
+        final Runnable task;
+        final long queuedAt;
+
+        Task(Lane lane, Runnable task, long queuedAt) {
+            this.lane = lane;
+            this.task = task;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
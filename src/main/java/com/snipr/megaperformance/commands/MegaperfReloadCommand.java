@@ -6,12 +6,24 @@ import com.hypixel.hytale.server.core.command.system.arguments.system.OptionalAr
 import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
 import com.hypixel.hytale.server.core.command.system.basecommands.CommandBase;
 import com.snipr.megaperformance.MegaPerformancePlugin;
+import com.snipr.megaperformance.async.Lane;
+import com.snipr.megaperformance.metrics.Histogram;
+import com.snipr.megaperformance.metrics.PerfStats;
+import com.snipr.megaperformance.optimizers.ChunkEntityIndex;
+import com.snipr.megaperformance.optimizers.Hotspots;
+import com.snipr.megaperformance.worlds.WorldSession;
 
 import javax.annotation.Nonnull;
 import java.awt.Color;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MegaperfReloadCommand extends CommandBase {
 
+    private static final int DEFAULT_HOTSPOTS = 10;
+    private static final int DEFAULT_DUMP_MINUTES = 30;
+
     private final MegaPerformancePlugin plugin;
     private final OptionalArg<String> subcommand;
 
@@ -36,7 +48,10 @@ public class MegaperfReloadCommand extends CommandBase {
             action = "reload";
         }
 
-        if ("reload".equalsIgnoreCase(action)) {
+        String[] args = action.trim().split("\\s+");
+        String verb = args[0];
+
+        if ("reload".equalsIgnoreCase(verb)) {
             boolean ok = plugin.reloadConfigFromDisk();
             Message msg = ok
                 ? Message.raw("[MegaPerf] Reloaded config").color(Color.GREEN)
@@ -45,9 +60,144 @@ public class MegaperfReloadCommand extends CommandBase {
             return;
         }
 
+        if ("stats".equalsIgnoreCase(verb)) {
+            if (args.length > 1 && "reset".equalsIgnoreCase(args[1])) {
+                PerfStats.reset();
+                ctx.sendMessage(Message.raw("[MegaPerf] Stats reset").color(Color.GREEN));
+                return;
+            }
+            sendStats(ctx);
+            return;
+        }
+
+        if ("hotspots".equalsIgnoreCase(verb)) {
+            int limit = DEFAULT_HOTSPOTS;
+            if (args.length > 1) {
+                try {
+                    limit = Math.max(1, Math.min(Hotspots.CAPACITY, Integer.parseInt(args[1])));
+                } catch (NumberFormatException ignored) { }
+            }
+            sendHotspots(ctx, limit);
+            return;
+        }
+
+        if ("dump".equalsIgnoreCase(verb)) {
+            int minutes = DEFAULT_DUMP_MINUTES;
+            if (args.length > 1) {
+                try {
+                    minutes = Math.max(1, Integer.parseInt(args[1]));
+                } catch (NumberFormatException ignored) { }
+            }
+            File out = plugin.getFlightRecorder().exportCsv(minutes);
+            ctx.sendMessage(out != null
+                ? Message.raw("[MegaPerf] Exporting the last " + minutes + " min of the timeline to " + out.getName()).color(Color.GREEN)
+                : Message.raw("[MegaPerf] Nothing to export; the timeline recorder is off or has no samples yet").color(Color.RED));
+            return;
+        }
+
         ctx.sendMessage(Message.join(
             Message.raw("[MegaPerf] Usage: ").color(Color.YELLOW),
-            Message.raw("/megaperf reload").color(Color.WHITE)
+            Message.raw("/megaperf reload | stats [reset] | hotspots [n] | dump [minutes]").color(Color.WHITE)
+        ));
+    }
+
+    private void sendStats(CommandContext ctx) {
+        for (Histogram h : PerfStats.histograms()) {
+            long count = h.count();
+            ctx.sendMessage(Message.join(
+                Message.raw("[MegaPerf] " + h.getName() + ": ").color(Color.YELLOW),
+                Message.raw(count == 0 ? "no samples" : String.format("p50=%s p99=%s max=%s (n=%d)",
+                    PerfStats.format(h, h.percentile(0.50)),
+                    PerfStats.format(h, h.percentile(0.99)),
+                    PerfStats.format(h, h.max()),
+                    count)).color(Color.WHITE)
+            ));
+        }
+        StringBuilder rejected = new StringBuilder();
+        for (Lane lane : Lane.values()) {
+            if (rejected.length() > 0) rejected.append(", ");
+            rejected.append(lane.name().toLowerCase()).append('=').append(lane.rejected.sum());
+        }
+        ctx.sendMessage(Message.join(
+            Message.raw("[MegaPerf] executor rejected: ").color(Color.YELLOW),
+            Message.raw(rejected.toString()).color(Color.WHITE)
+        ));
+        long messages = PerfStats.CHAT_MESSAGES.sum();
+        long suppressed = PerfStats.CHAT_SUPPRESSED.sum();
+        ctx.sendMessage(Message.join(
+            Message.raw("[MegaPerf] chat suppression: ").color(Color.YELLOW),
+            Message.raw(String.format("%d/%d (%.1f%%)", suppressed, messages,
+                messages == 0 ? 0.0 : suppressed * 100.0 / messages)).color(Color.WHITE)
+        ));
+        ctx.sendMessage(Message.join(
+            Message.raw("[MegaPerf] outbound packets: ").color(Color.YELLOW),
+            Message.raw(String.format("seen=%d merged=%d deferred=%d batches=%d dropped=%d",
+                PerfStats.PACKETS_OUTBOUND.sum(), PerfStats.PACKETS_MERGED.sum(),
+                PerfStats.PACKETS_DEFERRED.sum(), PerfStats.PACKET_BATCHES.sum(),
+                PerfStats.PACKETS_DROPPED.sum())).color(Color.WHITE)
         ));
+        long particles = PerfStats.PARTICLES_SEEN.sum();
+        long culled = PerfStats.PARTICLES_CULLED.sum();
+        ctx.sendMessage(Message.join(
+            Message.raw("[MegaPerf] particles culled: ").color(Color.YELLOW),
+            Message.raw(String.format("%d/%d (%.1f%%)", culled, particles,
+                particles == 0 ? 0.0 : culled * 100.0 / particles)).color(Color.WHITE)
+        ));
+        ctx.sendMessage(Message.join(
+            Message.raw("[MegaPerf] items merged: ").color(Color.YELLOW),
+            Message.raw(Long.toString(PerfStats.ITEMS_MERGED.sum())).color(Color.WHITE)
+        ));
+        ctx.sendMessage(Message.join(
+            Message.raw("[MegaPerf] chunk hibernation: ").color(Color.YELLOW),
+            Message.raw(String.format("frozen=%d thawed=%d",
+                PerfStats.CHUNKS_HIBERNATED.sum(), PerfStats.CHUNKS_THAWED.sum())).color(Color.WHITE)
+        ));
+    }
+
+    /** Merges the per-world rankings (each already top-k) and prints the {@code limit} most crowded chunks. */
+    private void sendHotspots(CommandContext ctx, int limit) {
+        List<WorldSession> owners = new ArrayList<>();
+        List<Hotspots> rankings = new ArrayList<>();
+        List<Integer> ranks = new ArrayList<>();
+        int entities = 0;
+        int chunks = 0;
+        for (WorldSession session : plugin.getWorldRegistry().sessions()) {
+            Hotspots hotspots = session.hotspots();
+            entities += hotspots.indexedEntities();
+            chunks += hotspots.chunkCount();
+            for (int rank = 0; rank < hotspots.size(); rank++) {
+                int at = 0;
+                while (at < ranks.size() && rankings.get(at).total(ranks.get(at)) >= hotspots.total(rank)) at++;
+                if (at >= limit) break;
+                owners.add(at, session);
+                rankings.add(at, hotspots);
+                ranks.add(at, rank);
+                if (ranks.size() > limit) {
+                    owners.remove(limit);
+                    rankings.remove(limit);
+                    ranks.remove(limit);
+                }
+            }
+        }
+        ctx.sendMessage(Message.join(
+            Message.raw("[MegaPerf] hotspots: ").color(Color.YELLOW),
+            Message.raw(String.format("%d entities across %d chunks", entities, chunks)).color(Color.WHITE)
+        ));
+        for (int i = 0; i < ranks.size(); i++) {
+            Hotspots hotspots = rankings.get(i);
+            int rank = ranks.get(i);
+            int chunkX = hotspots.chunkX(rank);
+            int chunkZ = hotspots.chunkZ(rank);
+            StringBuilder types = new StringBuilder();
+            for (int t = 0; t < hotspots.typeCount(rank); t++) {
+                types.append(t == 0 ? " " : ", ").append(hotspots.typeName(rank, t)).append('=').append(hotspots.typeTotal(rank, t));
+            }
+            ctx.sendMessage(Message.join(
+                Message.raw(String.format("[MegaPerf] #%d %s chunk %d,%d (x=%d z=%d): ", i + 1,
+                    owners.get(i).getName(), chunkX, chunkZ,
+                    chunkX << ChunkEntityIndex.CHUNK_SHIFT, chunkZ << ChunkEntityIndex.CHUNK_SHIFT)).color(Color.YELLOW),
+                Message.raw(hotspots.total(rank) + " entities" + types).color(Color.WHITE)
+            ));
+        }
     }
 }
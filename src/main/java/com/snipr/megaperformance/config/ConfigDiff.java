@@ -0,0 +1,49 @@
+package com.snipr.megaperformance.config;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+import java.util.EnumSet;
+import java.util.function.Function;
+
+/**
+ * Section-level comparison of two config snapshots, so a reload only restarts the subsystems whose own
+ * section changed. Sections are compared by their JSON form, which covers nested maps and lists without
+ * hand-written equals methods.
+ */
+public final class ConfigDiff {
+
+    public enum Section {
+        TICK(c -> c.tick),
+        ASYNC(c -> c.async),
+        ENTITIES(c -> c.entities),
+        NETWORK(c -> c.network),
+        WORLD(c -> c.world),
+        PARTICLES(c -> c.particles),
+        BUNDLED(c -> c.bundled),
+        RECORDER(c -> c.recorder),
+        WORLD_OVERRIDES(c -> c.worldOverrides);
+
+        private final Function<MegaPerformanceConfig, Object> accessor;
+
+        Section(Function<MegaPerformanceConfig, Object> accessor) {
+            this.accessor = accessor;
+        }
+    }
+
+    private static final Gson GSON = new Gson();
+
+    private ConfigDiff() { }
+
+    /** Sections that differ between the two snapshots; every section when {@code before} is null. */
+    public static EnumSet<Section> between(MegaPerformanceConfig before, MegaPerformanceConfig after) {
+        if (before == null) return EnumSet.allOf(Section.class);
+        EnumSet<Section> changed = EnumSet.noneOf(Section.class);
+        for (Section section : Section.values()) {
+            JsonElement a = GSON.toJsonTree(section.accessor.apply(before));
+            JsonElement b = GSON.toJsonTree(section.accessor.apply(after));
+            if (!a.equals(b)) changed.add(section);
+        }
+        return changed;
+    }
+}
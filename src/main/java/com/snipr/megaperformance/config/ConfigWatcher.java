@@ -0,0 +1,104 @@
+package com.snipr.megaperformance.config;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the config folder and calls {@code onChange} after the config file is created or modified.
+ * Editors often write a file in several steps, so events are debounced: the callback runs once the file
+ * has been quiet for {@link #DEBOUNCE_MS}. Runs on a single daemon thread; failures only disable watching.
+ */
+public class ConfigWatcher {
+
+    private static final long DEBOUNCE_MS = 500;
+
+    private final Path folder;
+    private final String fileName;
+    private final Runnable onChange;
+    private final HytaleLogger logger;
+
+    private WatchService service;
+    private Thread thread;
+
+    public ConfigWatcher(Path folder, String fileName, Runnable onChange, HytaleLogger logger) {
+        this.folder = folder;
+        this.fileName = fileName;
+        this.onChange = onChange;
+        this.logger = logger;
+    }
+
+    public synchronized void start() {
+        if (thread != null) return;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+            folder.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | RuntimeException e) {
+            logger.atWarning().withCause(e).log("[MegaPerf] Config auto-reload unavailable");
+            closeService();
+            return;
+        }
+        WatchService watching = service;
+        thread = new Thread(() -> watch(watching), "MegaPerf-ConfigWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        closeService();
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private void watch(WatchService watching) {
+        try {
+            while (true) {
+                if (!touchesConfig(watching.take())) continue;
+                // Swallow the rest of this write burst before reloading.
+                WatchKey next;
+                while ((next = watching.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    touchesConfig(next);
+                }
+                try {
+                    onChange.run();
+                } catch (RuntimeException e) {
+                    logger.atWarning().withCause(e).log("[MegaPerf] Config auto-reload failed");
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // stopped
+        }
+    }
+
+    /** Drains and resets {@code key}, reporting whether any of its events named the config file. */
+    private boolean touchesConfig(WatchKey key) {
+        boolean hit = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                || (context instanceof Path && fileName.equals(context.toString()))) {
+                hit = true;
+            }
+        }
+        key.reset();
+        return hit;
+    }
+
+    private void closeService() {
+        if (service == null) return;
+        try {
+            service.close();
+        } catch (IOException ignored) { }
+        service = null;
+    }
+}
@@ -1,6 +1,16 @@
 package com.snipr.megaperformance.config;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class MegaPerformanceConfig {
+    private static final Gson COPIER = new GsonBuilder().serializeNulls().serializeSpecialFloatingPointValues().create();
+
     public Tick tick = new Tick();
     public Async async = new Async();
     public Entities entities = new Entities();
@@ -8,39 +18,106 @@ public class MegaPerformanceConfig {
     public World world = new World();
     public Particles particles = new Particles();
     public Bundled bundled = new Bundled();
+    public Recorder recorder = new Recorder();
+    public Map<String, WorldOverride> worldOverrides = new HashMap<>();
+
+    /** Deep copy through the JSON form, so nested sections, maps and rule lists are never shared. */
+    public MegaPerformanceConfig copy() {
+        return COPIER.fromJson(COPIER.toJsonTree(this), MegaPerformanceConfig.class);
+    }
 
     public static class Tick {
         public int maxCatchupMillis = 50;
         public int jitterClampMs = 10;
+        public int optimizerBudgetMicros = 2000;
     }
 
     public static class Async {
         public int workerThreads = 2;
         public int maxQueue = 512;
+        public boolean virtualThreads = false;
     }
 
     public static class Entities {
         public int softCapPerChunk = 35;
         public int distantAiSkipEvery = 4;
+        public int nearRadius = 32;
+        public int midRadius = 96;
+        public int hibernateAfterSeconds = 300;
+        public boolean mergeItems = true;
+        public double itemMergeRadius = 1.5;
+        public Map<String, Double> typeWeights = new HashMap<>();
+        public List<String> protectedTypes = new ArrayList<>();
+        public List<PolicyRule> policies = new ArrayList<>();
     }
 
     public static class Network {
         public int packetBurstLimit = 256;
+        public boolean outboundCoalescing = true;
         public int coalesceChatMs = 75;
+        public int chatBurstCapacity = 4;
+        public double chatRefillPerSecond = 1.0;
+        public int duplicateWindowMs = 3000;
     }
 
     public static class World {
         public int autosaveMinutes = 10;
         public boolean staggerSaves = true;
+        public int maxConcurrentSaves = 1;
+        public int hotspotSnapshotMinutes = 5;
     }
 
     public static class Particles {
         public double densityScalar = 0.85;
         public boolean applyToProjectiles = true;
+        public int viewDistance = 64;
+        public int maxPerPlayerTick = 64;
     }
 
     public static class Bundled {
         public boolean aggressiveTrimming = false;
         public boolean lowAiDepth = false;
     }
+
+    public static class Recorder {
+        public int sampleSeconds = 1;
+        public int retentionHours = 24;
+    }
+
+    /**
+     * Entity rule matched on world name, entity type and block region; unset fields leave the value from
+     * the global settings or earlier rules in place. Later rules win, and region rules win over
+     * region-less ones; where regions overlap, a chunk follows the last region rule covering it.
+     */
+    public static class PolicyRule {
+        /** World name; null or "*" matches every world. */
+        public String world;
+        /** Entity type names; "name*" matches by prefix, null or empty matches every type. */
+        public List<String> types;
+        /** Inclusive block bounds, matched per chunk; null matches everywhere. */
+        public Region region;
+        /** Cap on entities of a matched type per chunk. */
+        public Integer maxPerChunk;
+        public Integer distantAiSkipEvery;
+        public Double trimWeight;
+        public Boolean protect;
+    }
+
+    public static class Region {
+        public int minX;
+        public int minZ;
+        public int maxX;
+        public int maxZ;
+    }
+
+    /** Per-world overrides keyed by world name; unset fields fall back to the global sections. */
+    public static class WorldOverride {
+        public Integer optimizerBudgetMicros;
+        public Integer softCapPerChunk;
+        public Integer distantAiSkipEvery;
+        public Integer nearRadius;
+        public Integer midRadius;
+        public Boolean aggressiveTrimming;
+        public Boolean lowAiDepth;
+    }
 }
@@ -0,0 +1,263 @@
+package com.snipr.megaperformance.metrics;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.HytaleServer;
+import com.snipr.megaperformance.async.Lane;
+import com.snipr.megaperformance.async.LaneExecutor;
+import com.snipr.megaperformance.config.MegaPerformanceConfig;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Always-on performance timeline. Every {@code sampleSeconds} one fixed-size binary sample (lag,
+ * pressure, entities, executor queue depth, heap, GC pauses and the save/trim/merge/reload events since
+ * the previous sample) is written into a memory-mapped ring file, {@code timeline.bin}, sized to hold
+ * {@code retentionHours} of samples. Sampling costs a few absolute buffer writes and never touches a
+ * world thread; the OS flushes the mapping, so the timeline survives a crash. {@link #exportCsv} copies
+ * a window out under the lock and writes the CSV on the analytics lane.
+ */
+public class FlightRecorder {
+
+    /** World-level figures read once per sample; implemented by the world registry. */
+    public interface Source {
+        double worstLagMs();
+
+        double peakPressure();
+
+        long indexedEntities();
+
+        int worldCount();
+    }
+
+    public static final String FILE_NAME = "timeline.bin";
+
+    private static final int MAGIC = 0x4D504652; // "MPFR"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_BYTES = 64;
+    private static final int OFF_WRITTEN = 16;
+
+    private static final String CSV_HEADER = "time,time_ms,worst_lag_ms,pressure,entities,worlds,queue_depth,"
+        + "trimmed,items_merged,saves,reloads,heap_used_mb,gc_pause_ms,gc_count";
+
+    private final Source source;
+    private final Supplier<LaneExecutor> executor;
+    private final File folder;
+    private final HytaleLogger logger;
+
+    private MappedByteBuffer ring;
+    private int capacity;
+    private long written;
+    private ScheduledFuture<?> task;
+
+    private long lastTrimmed;
+    private long lastMerged;
+    private long lastSaves;
+    private long lastReloads;
+    private long lastGcMillis;
+    private long lastGcCount;
+
+    public FlightRecorder(Source source, Supplier<LaneExecutor> executor, File folder, HytaleLogger logger) {
+        this.source = source;
+        this.executor = executor;
+        this.folder = folder;
+        this.logger = logger;
+    }
+
+    public synchronized void start(MegaPerformanceConfig.Recorder cfg) {
+        stop();
+        if (cfg.sampleSeconds <= 0 || cfg.retentionHours <= 0) return;
+        long wanted = TimeUnit.HOURS.toSeconds(cfg.retentionHours) / cfg.sampleSeconds;
+        int slots = (int) Math.max(60, Math.min(wanted, (Integer.MAX_VALUE - HEADER_BYTES) / RECORD_BYTES));
+        try {
+            open(new File(folder, FILE_NAME), slots);
+        } catch (IOException | RuntimeException e) {
+            logger.atWarning().withCause(e).log("[MegaPerf] Flight recorder disabled; could not map %s", FILE_NAME);
+            ring = null;
+            return;
+        }
+        lastTrimmed = PerfStats.ENTITIES_TRIMMED.sum();
+        lastMerged = PerfStats.ITEMS_MERGED.sum();
+        lastSaves = PerfStats.SAVES.sum();
+        lastReloads = PerfStats.RELOADS.sum();
+        lastGcMillis = gcMillis();
+        lastGcCount = gcCount();
+        task = HytaleServer.SCHEDULED_EXECUTOR.scheduleAtFixedRate(() -> {
+            try {
+                sample();
+            } catch (Exception ignored) { }
+        }, cfg.sampleSeconds, cfg.sampleSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        if (ring != null) {
+            ring.force();
+            ring = null;
+        }
+    }
+
+    /**
+     * Writes the samples from the last {@code minutes} to a timestamped CSV next to the ring file.
+     * Returns the file being written, or null when there is nothing to export or no executor to write it.
+     */
+    public File exportCsv(int minutes) {
+        byte[] window;
+        int count;
+        synchronized (this) {
+            if (ring == null || written == 0) return null;
+            long since = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(minutes);
+            long available = Math.min(written, capacity);
+            long first = written - available;
+            // Samples are in time order, so walk back from the newest until one is too old.
+            long from = written;
+            while (from > first && ring.getLong(offset(from - 1)) >= since) from--;
+            count = (int) (written - from);
+            if (count == 0) return null;
+            window = new byte[count * RECORD_BYTES];
+            for (int i = 0; i < count; i++) {
+                int at = offset(from + i);
+                for (int b = 0; b < RECORD_BYTES; b++) {
+                    window[i * RECORD_BYTES + b] = ring.get(at + b);
+                }
+            }
+        }
+        LaneExecutor lanes = executor.get();
+        if (lanes == null) return null;
+        File out = new File(folder, "timeline-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".csv");
+        boolean queued = lanes.submit(Lane.ANALYTICS, () -> writeCsv(out, window, count));
+        return queued ? out : null;
+    }
+
+    private void sample() {
+        double worstLagMs = source.worstLagMs();
+        double pressure = source.peakPressure();
+        long entities = source.indexedEntities();
+        int worlds = source.worldCount();
+        LaneExecutor lanes = executor.get();
+        int queued = lanes != null ? lanes.queuedCount() : 0;
+        Runtime rt = Runtime.getRuntime();
+        long heapUsed = rt.totalMemory() - rt.freeMemory();
+
+        long trimmed = PerfStats.ENTITIES_TRIMMED.sum();
+        long merged = PerfStats.ITEMS_MERGED.sum();
+        long saves = PerfStats.SAVES.sum();
+        long reloads = PerfStats.RELOADS.sum();
+        long gcMillis = gcMillis();
+        long gcCount = gcCount();
+
+        synchronized (this) {
+            if (ring == null) return;
+            int at = offset(written);
+            ring.putLong(at, System.currentTimeMillis());
+            ring.putInt(at + 8, (int) Math.min(Integer.MAX_VALUE, Math.round(worstLagMs * 1000)));
+            ring.putFloat(at + 12, (float) pressure);
+            ring.putInt(at + 16, (int) Math.min(Integer.MAX_VALUE, entities));
+            ring.putInt(at + 20, worlds);
+            ring.putInt(at + 24, queued);
+            ring.putInt(at + 28, delta(trimmed, lastTrimmed));
+            ring.putInt(at + 32, delta(merged, lastMerged));
+            ring.putInt(at + 36, delta(saves, lastSaves));
+            ring.putInt(at + 40, delta(reloads, lastReloads));
+            ring.putInt(at + 44, delta(gcCount, lastGcCount));
+            ring.putLong(at + 48, heapUsed);
+            ring.putLong(at + 56, Math.max(0, gcMillis - lastGcMillis));
+            written++;
+            ring.putLong(OFF_WRITTEN, written);
+        }
+        lastTrimmed = trimmed;
+        lastMerged = merged;
+        lastSaves = saves;
+        lastReloads = reloads;
+        lastGcMillis = gcMillis;
+        lastGcCount = gcCount;
+    }
+
+    /** Maps the ring, continuing an existing file when its layout matches and starting over otherwise. */
+    private void open(File file, int slots) throws IOException {
+        if (!folder.exists()) folder.mkdirs();
+        long size = HEADER_BYTES + (long) slots * RECORD_BYTES;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+            ring = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        capacity = slots;
+        if (ring.getInt(0) == MAGIC && ring.getInt(4) == VERSION && ring.getInt(8) == RECORD_BYTES
+            && ring.getInt(12) == slots) {
+            written = ring.getLong(OFF_WRITTEN);
+        } else {
+            ring.putInt(0, MAGIC);
+            ring.putInt(4, VERSION);
+            ring.putInt(8, RECORD_BYTES);
+            ring.putInt(12, slots);
+            written = 0;
+            ring.putLong(OFF_WRITTEN, 0);
+        }
+    }
+
+    private int offset(long index) {
+        return HEADER_BYTES + (int) (index % capacity) * RECORD_BYTES;
+    }
+
+    private void writeCsv(File out, byte[] window, int count) {
+        ByteBuffer records = ByteBuffer.wrap(window);
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8)) {
+            w.write(CSV_HEADER);
+            w.write('\n');
+            for (int i = 0; i < count; i++) {
+                int at = i * RECORD_BYTES;
+                long time = records.getLong(at);
+                w.write(String.format("%s,%d,%.3f,%.3f,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d%n",
+                    iso.format(new Date(time)), time,
+                    records.getInt(at + 8) / 1000.0, records.getFloat(at + 12),
+                    records.getInt(at + 16), records.getInt(at + 20), records.getInt(at + 24),
+                    records.getInt(at + 28), records.getInt(at + 32), records.getInt(at + 36),
+                    records.getInt(at + 40), records.getLong(at + 48) / (1024 * 1024),
+                    records.getLong(at + 56), records.getInt(at + 44)));
+            }
+            logger.atInfo().log("[MegaPerf] Exported %d timeline samples to %s", count, out.getName());
+        } catch (IOException e) {
+            logger.atWarning().withCause(e).log("[MegaPerf] Failed to export timeline to %s", out.getName());
+        }
+    }
+
+    private static int delta(long now, long before) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, now - before));
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+}
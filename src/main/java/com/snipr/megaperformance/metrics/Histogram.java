@@ -0,0 +1,97 @@
+package com.snipr.megaperformance.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram in the spirit of HdrHistogram: every power-of-two range is split into
+ * 16 linear sub-buckets, giving roughly 6% relative precision over the whole long range with a fixed
+ * array of counters. Recording is a couple of bit operations and one atomic increment; it never
+ * allocates, so it is safe to leave on hot paths.
+ */
+public final class Histogram {
+
+    public enum Unit { NANOS, COUNT }
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS + 1);
+
+    private final String name;
+    private final Unit unit;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public Histogram(String name, Unit unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Unit getUnit() {
+        return unit;
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(indexOf(value));
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) {
+            m = max.get();
+        }
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /** Upper bound of the bucket holding the {@code quantile} (0..1) value, capped at the recorded max. */
+    public long percentile(double quantile) {
+        long total = count();
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        long sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long upper = ((SUB_BUCKETS + sub + 1) << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
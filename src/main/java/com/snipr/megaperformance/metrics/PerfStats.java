@@ -0,0 +1,87 @@
+package com.snipr.megaperformance.metrics;
+
+import com.snipr.megaperformance.async.Lane;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide hot-path instrumentation. Everything here is lock-free and allocation-free on record,
+ * so it stays enabled in production and is read on demand by {@code /megaperf stats}.
+ */
+public final class PerfStats {
+
+    /** Delay between queuing an optimizer slice on a world and the world thread running it; not tick duration. */
+    public static final Histogram SLICE_QUEUE_DELAY = new Histogram("slice queue delay", Histogram.Unit.NANOS);
+    /** World-thread time spent on one entity optimizer pass, summed across its slices. */
+    public static final Histogram OPTIMIZER_PASS = new Histogram("optimizer pass", Histogram.Unit.NANOS);
+    public static final Histogram TRIMS_PER_PASS = new Histogram("trims per pass", Histogram.Unit.COUNT);
+    /** Packets written to one connection in one tick, immediate and flushed together. */
+    public static final Histogram PACKETS_PER_TICK = new Histogram("packets per connection tick", Histogram.Unit.COUNT);
+
+    public static final LongAdder CHAT_MESSAGES = new LongAdder();
+    public static final LongAdder CHAT_SUPPRESSED = new LongAdder();
+    public static final LongAdder PACKETS_OUTBOUND = new LongAdder();
+    public static final LongAdder PACKETS_MERGED = new LongAdder();
+    public static final LongAdder PACKETS_DEFERRED = new LongAdder();
+    public static final LongAdder PACKET_BATCHES = new LongAdder();
+    /** Queued packets given up on because their connection stayed unwritable. */
+    public static final LongAdder PACKETS_DROPPED = new LongAdder();
+    public static final LongAdder PARTICLES_SEEN = new LongAdder();
+    public static final LongAdder PARTICLES_CULLED = new LongAdder();
+    public static final LongAdder CHUNKS_HIBERNATED = new LongAdder();
+    public static final LongAdder CHUNKS_THAWED = new LongAdder();
+    /**
+     * Lifetime totals. The flight recorder derives per-sample deltas from these, so {@link #reset()} leaves
+     * them alone instead of making the timeline lose events until the totals catch up again.
+     */
+    public static final LongAdder ITEMS_MERGED = new LongAdder();
+    public static final LongAdder ENTITIES_TRIMMED = new LongAdder();
+    public static final LongAdder SAVES = new LongAdder();
+    public static final LongAdder RELOADS = new LongAdder();
+
+    private static final Histogram[] ALL = collect();
+
+    private PerfStats() { }
+
+    public static Histogram[] histograms() {
+        return ALL.clone();
+    }
+
+    public static String format(Histogram h, long value) {
+        if (h.getUnit() == Histogram.Unit.COUNT) return Long.toString(value);
+        return String.format("%.2fms", value / 1_000_000.0);
+    }
+
+    /** Clears histograms and rate counters; the lifetime totals above are kept for the flight recorder. */
+    public static void reset() {
+        for (Histogram h : ALL) {
+            h.reset();
+        }
+        CHAT_MESSAGES.reset();
+        CHAT_SUPPRESSED.reset();
+        PACKETS_OUTBOUND.reset();
+        PACKETS_MERGED.reset();
+        PACKETS_DEFERRED.reset();
+        PACKET_BATCHES.reset();
+        PACKETS_DROPPED.reset();
+        PARTICLES_SEEN.reset();
+        PARTICLES_CULLED.reset();
+        CHUNKS_HIBERNATED.reset();
+        CHUNKS_THAWED.reset();
+        for (Lane lane : Lane.values()) {
+            lane.rejected.reset();
+        }
+    }
+
+    private static Histogram[] collect() {
+        List<Histogram> all = new ArrayList<>(Arrays.asList(SLICE_QUEUE_DELAY, OPTIMIZER_PASS, TRIMS_PER_PASS, PACKETS_PER_TICK));
+        for (Lane lane : Lane.values()) {
+            all.add(lane.queueWait);
+            all.add(lane.run);
+        }
+        return all.toArray(new Histogram[0]);
+    }
+}
@@ -0,0 +1,235 @@
+package com.snipr.megaperformance.network;
+
+import com.hypixel.hytale.server.core.HytaleServer;
+import com.snipr.megaperformance.config.MegaPerformanceConfig;
+import com.snipr.megaperformance.metrics.PerfStats;
+import com.snipr.megaperformance.util.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-connection outbound packet queue that enforces {@code packetBurstLimit}. Deferrable packets (see
+ * {@link PacketKind}) are held until the next tick flush; a newer state update for the same entity
+ * replaces the queued one in place, and each flush writes the queue as one batch. Immediate packets are
+ * never held, but they count against the connection's per-tick limit; whatever does not fit is deferred
+ * to the next tick, never dropped. At least an eighth of the limit always goes to deferred packets so
+ * they cannot starve. A queue that reaches {@link #QUEUE_LIMIT_SCALE} times the limit is written out
+ * in full ahead of the new packet instead of growing further; if that write fails, the packet is queued
+ * behind the rest so it never overtakes an older update.
+ * <p>
+ * An immediate packet first releases everything queued for its connection, so the client never sees a
+ * deferred update after, say, the despawn that followed it. Connections without a resolvable writer are
+ * never queued. A failed write puts the batch back in front of the queue for the next flush; only after
+ * {@link #MAX_SEND_FAILURES} failures in a row is the connection treated as gone and its queue dropped,
+ * counted in {@link PerfStats#PACKETS_DROPPED}.
+ */
+public class OutboundCoalescer implements PacketStage {
+
+    public static final long FLUSH_PERIOD_MS = 1000 / 30;
+    public static final int QUEUE_LIMIT_SCALE = 4;
+    public static final int MAX_SEND_FAILURES = 3;
+
+    private static final long IDLE_EVICT_MS = 30_000;
+
+    private final Map<Object, ConnectionQueue> queues = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled;
+    private volatile int burstLimit;
+    private ScheduledFuture<?> flushTask;
+
+    public synchronized void start(MegaPerformanceConfig.Network cfg) {
+        stop();
+        burstLimit = cfg.packetBurstLimit;
+        enabled = cfg.outboundCoalescing && burstLimit > 0;
+        if (!enabled) return;
+        flushTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleAtFixedRate(() -> {
+            try {
+                flush(false);
+            } catch (Exception ignored) { }
+        }, FLUSH_PERIOD_MS, FLUSH_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops queuing and releases everything still held, ignoring the burst limit. */
+    public synchronized void stop() {
+        enabled = false;
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        flush(true);
+    }
+
+    @Override
+    public boolean onOutbound(Object connection, Object packet) {
+        if (!enabled) return false;
+        PerfStats.PACKETS_OUTBOUND.increment();
+        ConnectionQueue queue = queues.get(connection);
+        if (queue == null) {
+            ConnectionQueue created = new ConnectionQueue(PacketHooks.canSend(connection));
+            queue = queues.putIfAbsent(connection, created);
+            if (queue == null) queue = created;
+        }
+        if (!queue.writable) return false;
+        PacketKind kind = PacketKind.of(packet);
+        if (kind.deferrable) {
+            return queue.offer(connection, packet, kind.mergeKey(packet), burstLimit * QUEUE_LIMIT_SCALE);
+        }
+        queue.passThrough(connection);
+        return false;
+    }
+
+    private synchronized void flush(boolean unlimited) {
+        long now = System.currentTimeMillis();
+        int limit = burstLimit;
+        Iterator<Map.Entry<Object, ConnectionQueue>> it = queues.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Object, ConnectionQueue> entry = it.next();
+            ConnectionQueue queue = entry.getValue();
+            int sent;
+            int passed;
+            boolean evict;
+            synchronized (queue) {
+                passed = queue.passedThisTick;
+                queue.passedThisTick = 0;
+                int budget = unlimited ? queue.size : Math.max(limit / 8, limit - passed);
+                sent = queue.release(entry.getKey(), budget);
+                if (queue.failures >= MAX_SEND_FAILURES || (unlimited && queue.size > 0)) {
+                    // The connection is gone or unwritable; nothing still queued for it can be delivered.
+                    PerfStats.PACKETS_DROPPED.add(queue.size);
+                    queue.discard();
+                }
+                if (queue.size > 0) PerfStats.PACKETS_DEFERRED.add(queue.size);
+                if (sent > 0 || passed > 0) queue.lastActiveMs = now;
+                evict = queue.evicted || (queue.size == 0 && queue.lastActiveMs < now - IDLE_EVICT_MS);
+                if (evict) queue.evicted = true;
+            }
+            if (sent + passed > 0) PerfStats.PACKETS_PER_TICK.record(sent + passed);
+            if (evict) it.remove();
+        }
+    }
+
+    private static final class ConnectionQueue {
+        final boolean writable;
+        private Object[] pending = new Object[16];
+        private long[] keys = new long[16];
+        private Object[] sending = new Object[16];
+        private final LongIntHashMap positions = new LongIntHashMap(16);
+        int size;
+        int passedThisTick;
+        int failures;
+        long lastActiveMs = System.currentTimeMillis();
+        boolean evicted;
+
+        ConnectionQueue(boolean writable) {
+            this.writable = writable;
+        }
+
+        /** Counts an immediate packet and writes everything queued ahead of it first. */
+        synchronized void passThrough(Object connection) {
+            passedThisTick++;
+            if (size > 0) passedThisTick += release(connection, size);
+        }
+
+        /**
+         * Writes up to {@code max} queued packets, oldest first, as one batch. On failure they go back to
+         * the front of the queue and {@link #failures} grows. Returns the number written.
+         */
+        int release(Object connection, int max) {
+            int n = Math.min(size, max);
+            if (n == 0) return 0;
+            if (sending.length < n) sending = new Object[Math.max(n, sending.length * 2)];
+            drainTo(sending, n);
+            boolean ok = PacketHooks.send(connection, sending, n);
+            if (ok) {
+                failures = 0;
+                PerfStats.PACKET_BATCHES.increment();
+            } else {
+                failures++;
+                requeue(sending, n);
+            }
+            Arrays.fill(sending, 0, n, null);
+            return ok ? n : 0;
+        }
+
+        void discard() {
+            Arrays.fill(pending, 0, size, null);
+            positions.clear();
+            size = 0;
+            evicted = true;
+        }
+
+        /**
+         * Queues or merges the packet. When the queue is already full, everything queued is written first
+         * and false (send it now) is returned; if that write fails the packet is queued behind the rest.
+         */
+        synchronized boolean offer(Object connection, Object packet, long key, int capacity) {
+            if (evicted) return false;
+            if (key != PacketKind.NO_KEY) {
+                int at = positions.get(key);
+                if (at != LongIntHashMap.MISSING) {
+                    pending[at] = packet;
+                    PerfStats.PACKETS_MERGED.increment();
+                    return true;
+                }
+            }
+            if (size >= capacity) {
+                passedThisTick += release(connection, size);
+                if (size == 0) {
+                    passedThisTick++;
+                    return false;
+                }
+            }
+            if (size == pending.length) {
+                pending = Arrays.copyOf(pending, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            pending[size] = packet;
+            keys[size] = key;
+            if (key != PacketKind.NO_KEY) positions.put(key, size);
+            size++;
+            return true;
+        }
+
+        /** Moves up to {@code max} packets, oldest first, into {@code out}; the rest shift to the front. */
+        private int drainTo(Object[] out, int max) {
+            int n = Math.min(size, max);
+            if (n == 0) return 0;
+            System.arraycopy(pending, 0, out, 0, n);
+            for (int i = 0; i < n; i++) {
+                if (keys[i] != PacketKind.NO_KEY) positions.remove(keys[i]);
+            }
+            int remaining = size - n;
+            System.arraycopy(pending, n, pending, 0, remaining);
+            System.arraycopy(keys, n, keys, 0, remaining);
+            Arrays.fill(pending, remaining, size, null);
+            for (int i = 0; i < remaining; i++) {
+                if (keys[i] != PacketKind.NO_KEY) positions.put(keys[i], i);
+            }
+            size = remaining;
+            return n;
+        }
+
+        /** Puts {@code batch[0..n)} back in front of the queue, unmergeable so newer updates stay behind them. */
+        private void requeue(Object[] batch, int n) {
+            int total = size + n;
+            if (total > pending.length) {
+                int cap = Math.max(total, pending.length * 2);
+                pending = Arrays.copyOf(pending, cap);
+                keys = Arrays.copyOf(keys, cap);
+            }
+            System.arraycopy(pending, 0, pending, n, size);
+            System.arraycopy(keys, 0, keys, n, size);
+            System.arraycopy(batch, 0, pending, 0, n);
+            Arrays.fill(keys, 0, n, PacketKind.NO_KEY);
+            size = total;
+            for (int i = n; i < size; i++) {
+                if (keys[i] != PacketKind.NO_KEY) positions.put(keys[i], i);
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.snipr.megaperformance.network;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Installs a single reflective outbound packet filter and fans each packet out to the registered
+ * {@link PacketStage}s. The server exposes no stable API for this, so the hook looks for a static
+ * {@code registerOutbound} on the packet adapter registry that accepts a boolean filter taking
+ * (connection, packet); a filter returning true blocks the packet. When no such hook exists nothing is
+ * installed and every stage simply stays idle.
+ * <p>
+ * Packets a stage releases later go back out through {@link #send}, which writes them on the calling
+ * thread and lets them skip the pipeline. This assumes filters run synchronously on the writing thread.
+ */
+public final class PacketHooks {
+
+    private static final String[] ADAPTER_CLASSES = {
+        "com.hypixel.hytale.server.core.io.adapter.PacketAdapters",
+        "com.hypixel.hytale.server.core.io.PacketAdapters"
+    };
+    private static final String REGISTER_OUTBOUND = "registerOutbound";
+    private static final MethodType WRITER = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<SinkHandles> SINKS = new ClassValue<SinkHandles>() {
+        @Override
+        protected SinkHandles computeValue(Class<?> type) {
+            return new SinkHandles(type);
+        }
+    };
+
+    /** Set while {@link #send} writes on this thread, so released packets skip the pipeline. */
+    private static final ThreadLocal<boolean[]> RELEASING = ThreadLocal.withInitial(() -> new boolean[1]);
+
+    private final List<PacketStage> stages = new CopyOnWriteArrayList<>();
+    private volatile boolean installed;
+
+    public void addStage(PacketStage stage) {
+        stages.add(stage);
+    }
+
+    public boolean isInstalled() {
+        return installed;
+    }
+
+    /** Registers the outbound filter once; returns whether a usable hook was found. */
+    public synchronized boolean install(HytaleLogger logger) {
+        if (installed) return true;
+        for (String name : ADAPTER_CLASSES) {
+            try {
+                Class<?> adapters = Class.forName(name);
+                for (Method register : adapters.getMethods()) {
+                    Class<?> filterType = filterType(register);
+                    if (filterType == null) continue;
+                    register.invoke(null, newFilter(filterType));
+                    installed = true;
+                    logger.atInfo().log("[MegaPerf] Outbound packet hook installed via %s.%s",
+                        adapters.getSimpleName(), register.getName());
+                    return true;
+                }
+            } catch (ClassNotFoundException ignored) {
+            } catch (Exception e) {
+                logger.atWarning().withCause(e).log("Failed to install outbound packet hook");
+                return false;
+            }
+        }
+        logger.atInfo().log("[MegaPerf] No outbound packet hook available; network stages disabled");
+        return false;
+    }
+
+    /** Whether {@link #send} can find a writer for {@code connection}, checked without writing anything. */
+    public static boolean canSend(Object connection) {
+        SinkHandles sink = SINKS.get(connection.getClass());
+        if (sink.handler != null) {
+            try {
+                Object target = (Object) sink.handler.invokeExact(connection);
+                if (target == null) return false;
+                sink = SINKS.get(target.getClass());
+            } catch (Throwable t) {
+                return false;
+            }
+        }
+        return sink.batchWrite != null || sink.write != null;
+    }
+
+    /**
+     * Writes {@code packets[0..count)} to {@code connection}, as a single batch write when the connection
+     * supports one. Returns false when the connection exposes no writer or the write failed.
+     */
+    public static boolean send(Object connection, Object[] packets, int count) {
+        if (count == 0) return true;
+        SinkHandles sink = SINKS.get(connection.getClass());
+        Object target = connection;
+        if (sink.handler != null) {
+            try {
+                target = (Object) sink.handler.invokeExact(connection);
+            } catch (Throwable t) {
+                return false;
+            }
+            if (target == null) return false;
+            sink = SINKS.get(target.getClass());
+        }
+
+        boolean[] releasing = RELEASING.get();
+        boolean previous = releasing[0];
+        releasing[0] = true;
+        try {
+            if (sink.batchWrite != null) {
+                Object batch = Array.newInstance(sink.batchType, count);
+                System.arraycopy(packets, 0, batch, 0, count);
+                sink.batchWrite.invokeExact(target, batch);
+                return true;
+            }
+            if (sink.write == null) return false;
+            for (int i = 0; i < count; i++) {
+                sink.write.invokeExact(target, packets[i]);
+            }
+            return true;
+        } catch (Throwable t) {
+            return false;
+        } finally {
+            releasing[0] = previous;
+        }
+    }
+
+    private boolean dispatch(Object connection, Object packet) {
+        if (connection == null || packet == null || RELEASING.get()[0]) return false;
+        for (PacketStage stage : stages) {
+            try {
+                if (stage.onOutbound(connection, packet)) return true;
+            } catch (Exception ignored) { }
+        }
+        return false;
+    }
+
+    private Object newFilter(Class<?> filterType) {
+        return Proxy.newProxyInstance(filterType.getClassLoader(), new Class<?>[]{filterType}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals": return proxy == args[0];
+                    case "hashCode": return System.identityHashCode(proxy);
+                    default: return "MegaPerf outbound filter";
+                }
+            }
+            return args != null && args.length >= 2 && dispatch(args[0], args[args.length - 1]);
+        });
+    }
+
+    /** The filter interface accepted by {@code register}, or null when it is not a usable outbound hook. */
+    private static Class<?> filterType(Method register) {
+        if (!REGISTER_OUTBOUND.equals(register.getName()) || !Modifier.isStatic(register.getModifiers())) return null;
+        if (register.getParameterCount() != 1) return null;
+        Class<?> type = register.getParameterTypes()[0];
+        if (!type.isInterface()) return null;
+        Method single = null;
+        for (Method m : type.getMethods()) {
+            if (!Modifier.isAbstract(m.getModifiers())) continue;
+            if (single != null) return null;
+            single = m;
+        }
+        if (single == null || single.getReturnType() != boolean.class || single.getParameterCount() < 2) return null;
+        return type;
+    }
+
+    private static final class SinkHandles {
+        final MethodHandle handler;
+        final MethodHandle batchWrite;
+        final Class<?> batchType;
+        final MethodHandle write;
+
+        SinkHandles(Class<?> type) {
+            MethodHandle unwrap = null;
+            MethodHandle batch = null;
+            Class<?> component = null;
+            MethodHandle single = null;
+            for (Method m : type.getMethods()) {
+                if (m.getParameterCount() == 0 && "getPacketHandler".equals(m.getName())) {
+                    unwrap = handle(m, OBJECT_GETTER);
+                } else if (m.getParameterCount() == 1 && "write".equals(m.getName())) {
+                    Class<?> param = m.getParameterTypes()[0];
+                    if (param.isArray() && !param.getComponentType().isPrimitive()) {
+                        batch = handle(m, WRITER);
+                        component = batch != null ? param.getComponentType() : null;
+                    } else if (!param.isPrimitive() && !param.isArray()) {
+                        single = handle(m, WRITER);
+                    }
+                }
+            }
+            this.handler = unwrap;
+            this.batchWrite = batch;
+            this.batchType = component;
+            this.write = single;
+        }
+
+        private static MethodHandle handle(Method m, MethodType type) {
+            try {
+                return MethodHandles.publicLookup().unreflect(m).asFixedArity().asType(type);
+            } catch (Exception ignored) { }
+            return null;
+        }
+    }
+}
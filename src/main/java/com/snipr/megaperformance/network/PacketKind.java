@@ -0,0 +1,144 @@
+package com.snipr.megaperformance.network;
+
+import com.snipr.megaperformance.optimizers.EntityAccess;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-packet-class classification, resolved once per class from its simple name and cached. Packets
+ * that only carry cosmetic or continuously refreshed state are deferrable; those that also carry a
+ * single entity id and fully replace that entity's previous state are mergeable, meaning only the
+ * newest one per entity needs to reach the client. Only explicit entity id accessors count; a generic
+ * {@code getId} may be a packet or type id, so such packets are deferred but never merged. Everything
+ * unrecognised is sent immediately. Particle packets additionally expose their position and whether
+ * they belong to a projectile trail, judged by class name or particle system id.
+ */
+final class PacketKind {
+
+    static final long NO_KEY = Long.MIN_VALUE;
+
+    private static final String[] DEFERRABLE = {
+        "entityupdate", "transform", "position", "movement", "velocity", "rotation", "animation", "particle", "sound"
+    };
+    private static final String[] MERGEABLE = {"transform", "position", "movement", "velocity", "rotation"};
+    private static final String[] ENTITY_ID_GETTERS = {"getEntityId", "getNetworkId"};
+    private static final String[] ENTITY_ID_FIELDS = {"entityId", "networkId"};
+    private static final String[] TRAIL_MARKERS = {"trail", "projectile", "arrow"};
+    private static final String[] SYSTEM_ID_GETTERS = {"getParticleSystemId", "getSystemId"};
+    private static final MethodType ID_GETTER = MethodType.methodType(long.class, Object.class);
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final long ID_MASK = (1L << 40) - 1;
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private static final ClassValue<PacketKind> KINDS = new ClassValue<PacketKind>() {
+        @Override
+        protected PacketKind computeValue(Class<?> type) {
+            return new PacketKind(type);
+        }
+    };
+
+    final int id;
+    final boolean deferrable;
+    final boolean particle;
+    private final boolean trailClass;
+    private final MethodHandle entityId;
+    private final MethodHandle systemId;
+    private final MethodHandle position;
+
+    private PacketKind(Class<?> type) {
+        this.id = NEXT_ID.getAndIncrement();
+        String name = type.getSimpleName().toLowerCase(Locale.ROOT);
+        this.deferrable = matches(name, DEFERRABLE);
+        this.entityId = deferrable && matches(name, MERGEABLE) ? entityIdHandle(type) : null;
+        this.particle = name.contains("particle");
+        this.trailClass = particle && matches(name, TRAIL_MARKERS);
+        this.systemId = particle && !trailClass ? objectHandle(type, SYSTEM_ID_GETTERS, null) : null;
+        this.position = particle ? objectHandle(type, new String[]{"getPosition"}, "position") : null;
+    }
+
+    static PacketKind of(Object packet) {
+        return KINDS.get(packet.getClass());
+    }
+
+    /** Whether this particle packet belongs to a projectile trail. */
+    boolean isTrail(Object packet) {
+        if (trailClass) return true;
+        if (systemId == null) return false;
+        try {
+            Object id = (Object) systemId.invokeExact(packet);
+            return id instanceof String && containsMarker((String) id);
+        } catch (Throwable ignored) { }
+        return false;
+    }
+
+    /** Writes the particle packet's x and z into {@code xz}; false when it carries no readable position. */
+    boolean locate(Object packet, double[] xz) {
+        if (position == null) return false;
+        try {
+            Object vector = (Object) position.invokeExact(packet);
+            return vector != null && EntityAccess.readXZ(vector, xz);
+        } catch (Throwable ignored) { }
+        return false;
+    }
+
+    /** Key identifying (packet class, entity) for merging, or {@link #NO_KEY} when the packet cannot merge. */
+    long mergeKey(Object packet) {
+        if (entityId == null) return NO_KEY;
+        try {
+            long entity = (long) entityId.invokeExact(packet);
+            return ((long) id << 40) | (entity & ID_MASK);
+        } catch (Throwable ignored) { }
+        return NO_KEY;
+    }
+
+    private static boolean matches(String name, String[] fragments) {
+        for (String fragment : fragments) {
+            if (name.contains(fragment)) return true;
+        }
+        return false;
+    }
+
+    /** Case-insensitive marker match without allocating a lowered copy of the id. */
+    private static boolean containsMarker(String id) {
+        for (String marker : TRAIL_MARKERS) {
+            for (int i = 0; i + marker.length() <= id.length(); i++) {
+                if (id.regionMatches(true, i, marker, 0, marker.length())) return true;
+            }
+        }
+        return false;
+    }
+
+    private static MethodHandle objectHandle(Class<?> type, String[] getters, String field) {
+        for (String getter : getters) {
+            try {
+                return MethodHandles.publicLookup().unreflect(type.getMethod(getter)).asType(OBJECT_GETTER);
+            } catch (Exception ignored) { }
+        }
+        if (field == null) return null;
+        try {
+            return MethodHandles.publicLookup().unreflectGetter(type.getField(field)).asType(OBJECT_GETTER);
+        } catch (Exception ignored) { }
+        return null;
+    }
+
+    private static MethodHandle entityIdHandle(Class<?> type) {
+        for (String getter : ENTITY_ID_GETTERS) {
+            try {
+                Method m = type.getMethod(getter);
+                return MethodHandles.publicLookup().unreflect(m).asType(ID_GETTER);
+            } catch (Exception ignored) { }
+        }
+        for (String field : ENTITY_ID_FIELDS) {
+            try {
+                return MethodHandles.publicLookup().unreflectGetter(type.getField(field)).asType(ID_GETTER);
+            } catch (Exception ignored) { }
+        }
+        return null;
+    }
+}
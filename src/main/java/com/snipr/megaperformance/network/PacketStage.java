@@ -0,0 +1,14 @@
+package com.snipr.megaperformance.network;
+
+/**
+ * One step of the outbound packet pipeline installed by {@link PacketHooks}. Stages run in registration
+ * order on whatever thread writes the packet, so implementations must be thread-safe and cheap.
+ */
+public interface PacketStage {
+
+    /**
+     * Called for every outbound packet. Returns true when the stage took ownership of the packet (it will
+     * be sent later or intentionally discarded), false to let it continue down the pipeline unchanged.
+     */
+    boolean onOutbound(Object connection, Object packet);
+}
@@ -0,0 +1,141 @@
+package com.snipr.megaperformance.network;
+
+import com.snipr.megaperformance.metrics.PerfStats;
+import com.snipr.megaperformance.optimizers.EntityAccess;
+import com.snipr.megaperformance.optimizers.ParticleOptimizer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the {@link ParticleOptimizer} policy to outbound particle packets, per receiving player:
+ * particles beyond the view distance are dropped, the rest are thinned to the effective density scalar,
+ * and at most {@code maxPerPlayerTick} get through per tick. Thinning is error-diffusion sampling (keep a
+ * packet each time the running sum of the scalar crosses 1), so it is deterministic, exact over time and
+ * allocation-free. Projectile trails use their own sampling stream and are only thinned when
+ * {@code applyToProjectiles} is set.
+ */
+public class ParticleCuller implements PacketStage {
+
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1) / 30;
+    private static final long IDLE_EVICT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+
+    /** Resolves the player behind a connection object, falling back to the connection itself. */
+    private static final ClassValue<MethodHandle> VIEWERS = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            for (String name : new String[]{"getPlayerRef", "getPlayer"}) {
+                try {
+                    Method m = type.getMethod(name);
+                    return MethodHandles.publicLookup().unreflect(m).asType(OBJECT_GETTER);
+                } catch (Exception ignored) { }
+            }
+            return null;
+        }
+    };
+
+    private final ParticleOptimizer policy;
+    private final Map<Object, ViewerState> viewers = new ConcurrentHashMap<>();
+
+    public ParticleCuller(ParticleOptimizer policy) {
+        this.policy = policy;
+    }
+
+    @Override
+    public boolean onOutbound(Object connection, Object packet) {
+        PacketKind kind = PacketKind.of(packet);
+        if (!kind.particle) return false;
+        boolean trail = kind.isTrail(packet);
+        if (trail && !policy.isApplyProjectiles()) return false;
+
+        PerfStats.PARTICLES_SEEN.increment();
+        ViewerState viewer = viewers.get(connection);
+        if (viewer == null) {
+            ViewerState created = new ViewerState();
+            viewer = viewers.putIfAbsent(connection, created);
+            if (viewer == null) viewer = created;
+        }
+        int distance = policy.getViewDistance();
+        boolean keep;
+        synchronized (viewer) {
+            keep = viewer.admit(connection, packet, kind, trail, System.nanoTime(), policy.getEffectiveScalar(),
+                (double) distance * distance, policy.getMaxPerPlayerTick());
+        }
+        if (keep) return false;
+        PerfStats.PARTICLES_CULLED.increment();
+        return true;
+    }
+
+    /** Drops per-player state for connections that have not received particles recently. */
+    public void evictIdle() {
+        long cutoff = System.nanoTime() - IDLE_EVICT_NANOS;
+        Iterator<ViewerState> it = viewers.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().lastSeenNanos - cutoff < 0) it.remove();
+        }
+    }
+
+    private static final class ViewerState {
+        private final double[] xz = new double[2];
+        volatile long lastSeenNanos;
+        private long tick = Long.MIN_VALUE;
+        private int sentThisTick;
+        private boolean viewerKnown;
+        private double viewerX;
+        private double viewerZ;
+        private double sampleSum;
+        private double trailSum;
+
+        boolean admit(Object connection, Object packet, PacketKind kind, boolean trail, long now, double scalar,
+                      double viewDistanceSq, int cap) {
+            lastSeenNanos = now;
+            long current = now / TICK_NANOS;
+            if (current != tick) {
+                tick = current;
+                sentThisTick = 0;
+                locateViewer(connection);
+            }
+            if (cap > 0 && sentThisTick >= cap) return false;
+            if (viewDistanceSq > 0 && viewerKnown && kind.locate(packet, xz)) {
+                double dx = xz[0] - viewerX;
+                double dz = xz[1] - viewerZ;
+                if (dx * dx + dz * dz > viewDistanceSq) return false;
+            }
+            if (trail) {
+                trailSum += scalar;
+                if (trailSum < 1) return false;
+                trailSum -= 1;
+            } else {
+                sampleSum += scalar;
+                if (sampleSum < 1) return false;
+                sampleSum -= 1;
+            }
+            sentThisTick++;
+            return true;
+        }
+
+        private void locateViewer(Object connection) {
+            Object viewer = connection;
+            MethodHandle unwrap = VIEWERS.get(connection.getClass());
+            if (unwrap != null) {
+                try {
+                    viewer = (Object) unwrap.invokeExact(connection);
+                } catch (Throwable ignored) {
+                    viewer = null;
+                }
+            }
+            viewerKnown = viewer != null && EntityAccess.locate(viewer, xz);
+            if (viewerKnown) {
+                viewerX = xz[0];
+                viewerZ = xz[1];
+            }
+        }
+    }
+}
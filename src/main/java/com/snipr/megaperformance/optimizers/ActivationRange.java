@@ -0,0 +1,92 @@
+package com.snipr.megaperformance.optimizers;
+
+import com.snipr.megaperformance.util.LongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Buckets entities into near, mid and far activation tiers by distance to the closest player.
+ * Player positions are gathered once per pass into a uniform grid whose cell size equals the mid
+ * radius, so deciding whether any player is within the mid radius only needs the 3x3 cells around
+ * the entity; anything not found there is far by construction.
+ */
+public final class ActivationRange {
+
+    public static final byte TIER_NEAR = 0;
+    public static final byte TIER_MID = 1;
+    public static final byte TIER_FAR = 2;
+
+    private final LongIntHashMap cellHead = new LongIntHashMap();
+    private double[] playerX = new double[32];
+    private double[] playerZ = new double[32];
+    private int[] next = new int[32];
+    private int players;
+
+    private double nearSq = 32 * 32;
+    private double midSq = 96 * 96;
+    private double cellSize = 96;
+
+    public void configure(int nearRadius, int midRadius) {
+        int near = Math.max(1, nearRadius);
+        int mid = Math.max(near, midRadius);
+        nearSq = (double) near * near;
+        midSq = (double) mid * mid;
+        cellSize = mid;
+    }
+
+    public void clearPlayers() {
+        if (players > 0) cellHead.clear();
+        players = 0;
+    }
+
+    public void addPlayer(double x, double z) {
+        if (players == playerX.length) {
+            int cap = players << 1;
+            playerX = Arrays.copyOf(playerX, cap);
+            playerZ = Arrays.copyOf(playerZ, cap);
+            next = Arrays.copyOf(next, cap);
+        }
+        int id = players++;
+        playerX[id] = x;
+        playerZ[id] = z;
+        long cell = cell(x, z);
+        next[id] = cellHead.get(cell);
+        cellHead.put(cell, id);
+    }
+
+    public int playerCount() {
+        return players;
+    }
+
+    /** Squared distance to the nearest player within the mid radius, or +Infinity if none is that close. */
+    public double nearestWithinMidSq(double x, double z) {
+        if (players == 0) return Double.POSITIVE_INFINITY;
+        int cx = (int) Math.floor(x / cellSize);
+        int cz = (int) Math.floor(z / cellSize);
+        double best = Double.POSITIVE_INFINITY;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                int p = cellHead.get(ChunkEntityIndex.packChunk(cx + dx, cz + dz));
+                while (p != LongIntHashMap.MISSING) {
+                    double ddx = playerX[p] - x;
+                    double ddz = playerZ[p] - z;
+                    double d = ddx * ddx + ddz * ddz;
+                    if (d < best) best = d;
+                    p = next[p];
+                }
+            }
+        }
+        return best <= midSq ? best : Double.POSITIVE_INFINITY;
+    }
+
+    public byte classify(double x, double z) {
+        double d = nearestWithinMidSq(x, z);
+        if (d <= nearSq) return TIER_NEAR;
+        if (d <= midSq) return TIER_MID;
+        return TIER_FAR;
+    }
+
+    private long cell(double x, double z) {
+        return ChunkEntityIndex.packChunk((int) Math.floor(x / cellSize), (int) Math.floor(z / cellSize));
+    }
+}
@@ -1,34 +1,167 @@
 package com.snipr.megaperformance.optimizers;
 
+import com.hypixel.hytale.server.core.HytaleServer;
 import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.event.events.player.PlayerChatEvent;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.snipr.megaperformance.config.MegaPerformanceConfig;
+import com.snipr.megaperformance.metrics.PerfStats;
 
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Simple chat burst limiter: suppresses duplicate chat within a small window to reduce packet spam.
- * Best-effort: if a player chats again within coalesceChatMs, the message is replaced with a compact notice.
+ * Per-player chat burst limiter. Each player gets a lock-free token bucket (burst of
+ * {@code chatBurstCapacity}, refilled at {@code chatRefillPerSecond}) plus a minimum gap of
+ * {@code coalesceChatMs} between messages; over-limit messages are cancelled and only the sender is told.
+ * Repeats of the same message within {@code duplicateWindowMs} are held back and sent once as a single
+ * "(xN)" line, so spam waves cost one outbound chat packet per window instead of one per repeat. That
+ * line goes through the formatter left on the held-back chat event (see {@link ChatFormat}), so server
+ * and plugin chat formatting still apply; events without a usable formatter are never coalesced.
+ * Idle players are evicted by {@link #evictIdle()} so memory does not grow with player churn.
  */
 public class ChatBurstOptimizer {
 
-    private final Map<String, Long> lastChatMs = new ConcurrentHashMap<>();
+    public static final long IDLE_EVICT_MS = TimeUnit.MINUTES.toMillis(10);
 
-    public void applyFormatter(PlayerChatEvent event, MegaPerformanceConfig.Network netCfg) {
+    private final Map<UUID, PlayerChatState> states = new ConcurrentHashMap<>();
+
+    public void apply(PlayerChatEvent event, MegaPerformanceConfig.Network netCfg) {
+        PlayerRef sender = event.getSender();
+        UUID id = sender != null ? sender.getUuid() : null;
+        if (id == null) return;
+
+        PerfStats.CHAT_MESSAGES.increment();
         long now = System.currentTimeMillis();
-        long window = Math.max(0, netCfg.coalesceChatMs);
-        Long last = lastChatMs.get("global");
-        boolean suppress = last != null && (now - last) < window;
-        lastChatMs.put("global", now);
-
-        if (!suppress) return;
-
-        event.setFormatter((playerRef, message) -> Message.join(
-            Message.raw("[Chat-Limited] ").color(Color.YELLOW),
-            Message.raw(playerRef.getUsername()).color(Color.WHITE),
-            Message.raw(" is sending messages too quickly.").color(Color.GRAY)
-        ));
+        PlayerChatState state = states.get(id);
+        if (state == null) {
+            PlayerChatState created = new PlayerChatState();
+            state = states.putIfAbsent(id, created);
+            if (state == null) state = created;
+        }
+        state.lastSeenMs = now;
+
+        if (coalesceDuplicate(event, sender, state, now, Math.max(0, netCfg.duplicateWindowMs))) {
+            PerfStats.CHAT_SUPPRESSED.increment();
+            return;
+        }
+
+        long intervalMs = (long) Math.ceil(1000.0 / Math.max(0.01, netCfg.chatRefillPerSecond));
+        if (state.tryAcquire(now, Math.max(1, netCfg.chatBurstCapacity), intervalMs, Math.max(0, netCfg.coalesceChatMs))) {
+            state.notified = false;
+            return;
+        }
+
+        event.setCancelled(true);
+        PerfStats.CHAT_SUPPRESSED.increment();
+        if (!state.notified) {
+            state.notified = true;
+            sender.sendMessage(Message.join(
+                Message.raw("[Chat-Limited] ").color(Color.YELLOW),
+                Message.raw("You are sending messages too quickly.").color(Color.GRAY)
+            ));
+        }
+    }
+
+    /** Drops state for players who have not chatted for {@link #IDLE_EVICT_MS}. */
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - IDLE_EVICT_MS;
+        Iterator<PlayerChatState> it = states.values().iterator();
+        while (it.hasNext()) {
+            PlayerChatState state = it.next();
+            if (state.lastSeenMs >= cutoff) continue;
+            synchronized (state) {
+                if (state.repeats == 0) it.remove();
+            }
+        }
+    }
+
+    public int trackedPlayers() {
+        return states.size();
+    }
+
+    private boolean coalesceDuplicate(PlayerChatEvent event, PlayerRef sender, PlayerChatState state,
+                                      long now, long windowMs) {
+        if (windowMs == 0 || !ChatFormat.isSupported(event)) return false;
+        String content = event.getContent();
+        boolean scheduleFlush;
+        synchronized (state) {
+            if (content == null || !content.equals(state.lastContent) || now - state.lastContentMs > windowMs) {
+                state.lastContent = content;
+                state.lastContentMs = now;
+                return false;
+            }
+            state.lastContentMs = now;
+            scheduleFlush = state.repeats++ == 0;
+            if (scheduleFlush) {
+                state.pendingTargets = new ArrayList<>(event.getTargets());
+                state.pendingEvent = event;
+            }
+        }
+        event.setCancelled(true);
+        if (scheduleFlush) {
+            HytaleServer.SCHEDULED_EXECUTOR.schedule(() -> flush(sender, state), windowMs, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    private void flush(PlayerRef sender, PlayerChatState state) {
+        int repeats;
+        String content;
+        List<PlayerRef> targets;
+        PlayerChatEvent event;
+        synchronized (state) {
+            repeats = state.repeats;
+            content = state.lastContent;
+            targets = state.pendingTargets;
+            event = state.pendingEvent;
+            state.repeats = 0;
+            state.pendingTargets = null;
+            state.pendingEvent = null;
+        }
+        if (repeats == 0 || targets == null || event == null) return;
+
+        Message line = ChatFormat.format(event, sender, content + " (x" + repeats + ")");
+        if (line == null) return;
+        for (PlayerRef target : targets) {
+            try {
+                target.sendMessage(line);
+            } catch (Exception ignored) { }
+        }
+    }
+
+    private static final class PlayerChatState {
+        /** GCRA "theoretical arrival time"; equivalent to a token bucket held in a single long. */
+        private final AtomicLong tat = new AtomicLong();
+        private volatile long lastAcceptedMs;
+        volatile long lastSeenMs;
+        volatile boolean notified;
+
+        String lastContent;
+        long lastContentMs;
+        int repeats;
+        List<PlayerRef> pendingTargets;
+        PlayerChatEvent pendingEvent;
+
+        boolean tryAcquire(long now, int capacity, long intervalMs, long minGapMs) {
+            if (minGapMs > 0 && now - lastAcceptedMs < minGapMs) return false;
+            long tolerance = intervalMs * (capacity - 1);
+            while (true) {
+                long current = tat.get();
+                long base = Math.max(current, now);
+                if (base - now > tolerance) return false;
+                if (tat.compareAndSet(current, base + intervalMs)) {
+                    lastAcceptedMs = now;
+                    return true;
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,86 @@
+package com.snipr.megaperformance.optimizers;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.event.events.player.PlayerChatEvent;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Reflective access to the formatter a chat event carries, cached per event class like
+ * {@link ItemAccess}. The formatter is whatever the server and other plugins left on the event, so a
+ * line formatted through it looks exactly like a chat line the server sent itself. The format method is
+ * resolved on the getter's declared return type, since formatter instances are often lambdas whose own
+ * classes are not accessible.
+ */
+final class ChatFormat {
+
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType FORMAT = MethodType.methodType(Object.class, Object.class, PlayerRef.class, String.class);
+    private static final String[] FORMATTER_GETTERS = {"getFormatter", "getChatFormatter"};
+    private static final String[] FORMAT_METHODS = {"format", "apply"};
+
+    private static final ClassValue<EventHandles> EVENTS = new ClassValue<EventHandles>() {
+        @Override
+        protected EventHandles computeValue(Class<?> type) {
+            return new EventHandles(type);
+        }
+    };
+
+    private ChatFormat() { }
+
+    /** Whether the event exposes a formatter that {@link #format} can use. */
+    static boolean isSupported(PlayerChatEvent event) {
+        return EVENTS.get(event.getClass()).format != null;
+    }
+
+    /** {@code content} from {@code sender} formatted by the event's formatter, or null when that fails. */
+    static Message format(PlayerChatEvent event, PlayerRef sender, String content) {
+        EventHandles handles = EVENTS.get(event.getClass());
+        if (handles.format == null) return null;
+        try {
+            Object formatter = (Object) handles.formatter.invokeExact((Object) event);
+            if (formatter == null) return null;
+            Object line = (Object) handles.format.invokeExact(formatter, sender, content);
+            return line instanceof Message ? (Message) line : null;
+        } catch (Throwable ignored) { }
+        return null;
+    }
+
+    private static final class EventHandles {
+        final MethodHandle formatter;
+        final MethodHandle format;
+
+        EventHandles(Class<?> type) {
+            MethodHandle getter = null;
+            MethodHandle formatMethod = null;
+            for (String name : FORMATTER_GETTERS) {
+                try {
+                    Method m = type.getMethod(name);
+                    formatMethod = formatMethod(m.getReturnType());
+                    if (formatMethod == null) continue;
+                    getter = MethodHandles.publicLookup().unreflect(m).asType(OBJECT_GETTER);
+                    break;
+                } catch (Exception ignored) {
+                    formatMethod = null;
+                }
+            }
+            this.formatter = getter;
+            this.format = getter != null ? formatMethod : null;
+        }
+
+        private static MethodHandle formatMethod(Class<?> formatterType) {
+            for (String name : FORMAT_METHODS) {
+                try {
+                    Method m = formatterType.getMethod(name, PlayerRef.class, String.class);
+                    if (!Message.class.isAssignableFrom(m.getReturnType())) continue;
+                    return MethodHandles.publicLookup().unreflect(m).asType(FORMAT);
+                } catch (Exception ignored) { }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package com.snipr.megaperformance.optimizers;
+
+import com.snipr.megaperformance.util.IdentityIntMap;
+import com.snipr.megaperformance.util.LongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Incrementally maintained spatial index of trimmable entities, keyed by packed chunk coordinates.
+ * Every entity owns a dense slot id; every occupied chunk owns a bucket holding a compact int set of
+ * slot ids. An entity only touches the maps when it first appears, changes chunk, or disappears, and
+ * buckets above the soft cap are tracked as they cross it so trimming never walks quiet chunks.
+ * Alongside the buckets it keeps a census of members per (chunk, entity type), updated on the same
+ * transitions, so per-chunk type counts never need a rescan. Each bucket also remembers the last pass a
+ * player was within range of it, which drives hibernation of idle chunks.
+ */
+public final class ChunkEntityIndex {
+
+    /** Hytale chunks are 32 blocks wide. */
+    public static final int CHUNK_SHIFT = 5;
+
+    /** Returned by position lookups that could not place an entity. */
+    public static final long NO_CHUNK = Long.MIN_VALUE;
+
+    private final IdentityIntMap slotByEntity = new IdentityIntMap();
+    private Object[] slotEntity = new Object[256];
+    private long[] slotChunk = new long[256];
+    private int[] slotBucket = new int[256];
+    private int[] slotBucketPos = new int[256];
+    private int[] slotSeen = new int[256];
+    private float[] slotX = new float[256];
+    private float[] slotZ = new float[256];
+    private byte[] slotTier = new byte[256];
+    private boolean[] slotAiSuspended = new boolean[256];
+    private boolean[] slotFrozen = new boolean[256];
+    private int[] slotType = new int[256];
+    private int[] slotBornPass = new int[256];
+    private int slotHighWater;
+    private int[] freeSlots = new int[64];
+    private int freeSlotCount;
+
+    private final LongIntHashMap bucketByChunk = new LongIntHashMap();
+    private long[] bucketChunk = new long[64];
+    private int[][] bucketMembers = new int[64][];
+    private int[] bucketSize = new int[64];
+    private int[] bucketOverloadedPos = new int[64];
+    private int[] bucketWarmPass = new int[64];
+    private boolean[] bucketHibernating = new boolean[64];
+    private int bucketHighWater;
+    private int[] freeBuckets = new int[16];
+    private int freeBucketCount;
+
+    /** Members per (bucket, type), keyed by {@link #censusKey}; entries are dropped when they reach 0. */
+    private final LongIntHashMap census = new LongIntHashMap();
+
+    private int[] overloaded = new int[16];
+    private int overloadedCount;
+    private int softCap = Integer.MAX_VALUE;
+
+    private int pass;
+    private long mutations;
+
+    public static long packChunk(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public static long chunkOf(double x, double z) {
+        return packChunk((int) Math.floor(x) >> CHUNK_SHIFT, (int) Math.floor(z) >> CHUNK_SHIFT);
+    }
+
+    public static int chunkX(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int chunkZ(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Updates the cap used to classify overloaded chunks. Only rebuilds the overloaded list when the cap
+     * actually changes.
+     */
+    public void setSoftCap(int cap) {
+        if (cap == softCap) return;
+        softCap = cap;
+        overloadedCount = 0;
+        for (int b = 0; b < bucketHighWater; b++) {
+            bucketOverloadedPos[b] = -1;
+            if (bucketMembers[b] != null && bucketSize[b] > cap) markOverloaded(b);
+        }
+    }
+
+    public void beginPass() {
+        pass++;
+    }
+
+    /**
+     * Records that {@code entity} was seen at ({@code x}, {@code z}) during the current pass, inserting
+     * or moving it between chunk buckets as needed.
+     */
+    public int observe(Object entity, double x, double z) {
+        long chunkKey = chunkOf(x, z);
+        int slot = slotByEntity.get(entity);
+        if (slot == IdentityIntMap.MISSING) {
+            slot = allocateSlot();
+            slotEntity[slot] = entity;
+            slotTier[slot] = ActivationRange.TIER_NEAR;
+            slotAiSuspended[slot] = false;
+            slotFrozen[slot] = false;
+            slotType[slot] = -1;
+            slotBornPass[slot] = pass;
+            slotByEntity.put(entity, slot);
+            addToBucket(slot, chunkKey);
+        } else if (slotChunk[slot] != chunkKey) {
+            removeFromBucket(slot);
+            addToBucket(slot, chunkKey);
+        }
+        slotX[slot] = (float) x;
+        slotZ[slot] = (float) z;
+        slotSeen[slot] = pass;
+        return slot;
+    }
+
+    /** Slot of an already indexed entity, or {@link IdentityIntMap#MISSING}. */
+    public int slotOf(Object entity) {
+        return slotByEntity.get(entity);
+    }
+
+    /** Keeps a slot alive for this pass without re-reading its position. */
+    public void markSeen(int slot) {
+        slotSeen[slot] = pass;
+    }
+
+    /** Drops every entity that was not observed since {@link #beginPass()}. */
+    public void endPass() {
+        sweepStale(0, slotHighWater);
+    }
+
+    /**
+     * Resumable form of {@link #endPass()}: sweeps at most {@code maxSlots} slots starting at
+     * {@code fromSlot} and returns the slot to continue from. The sweep is complete once the returned
+     * value reaches {@link #slotLimit()}.
+     */
+    public int sweepStale(int fromSlot, int maxSlots) {
+        int end = (int) Math.min((long) fromSlot + maxSlots, slotHighWater);
+        for (int slot = fromSlot; slot < end; slot++) {
+            if (slotEntity[slot] != null && slotSeen[slot] != pass) remove(slot);
+        }
+        return end;
+    }
+
+    public int slotLimit() {
+        return slotHighWater;
+    }
+
+    public void remove(int slot) {
+        Object entity = slotEntity[slot];
+        if (entity == null) return;
+        removeFromBucket(slot);
+        slotByEntity.remove(entity);
+        slotEntity[slot] = null;
+        if (freeSlotCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeSlotCount << 1);
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    public void clear() {
+        slotByEntity.clear();
+        Arrays.fill(slotEntity, 0, slotHighWater, null);
+        slotHighWater = 0;
+        freeSlotCount = 0;
+        bucketByChunk.clear();
+        census.clear();
+        Arrays.fill(bucketMembers, 0, bucketHighWater, null);
+        bucketHighWater = 0;
+        freeBucketCount = 0;
+        overloadedCount = 0;
+    }
+
+    public int size() {
+        return slotByEntity.size();
+    }
+
+    /** Number of bucket insertions and removals so far; changes whenever an entity appears, moves or goes. */
+    public long mutationCount() {
+        return mutations;
+    }
+
+    public int chunkCount() {
+        return bucketByChunk.size();
+    }
+
+    public Object entity(int slot) {
+        return slotEntity[slot];
+    }
+
+    public long chunkOfSlot(int slot) {
+        return slotChunk[slot];
+    }
+
+    public float x(int slot) {
+        return slotX[slot];
+    }
+
+    public float z(int slot) {
+        return slotZ[slot];
+    }
+
+    public byte tier(int slot) {
+        return slotTier[slot];
+    }
+
+    public void setTier(int slot, byte tier) {
+        slotTier[slot] = tier;
+    }
+
+    public boolean isAiSuspended(int slot) {
+        return slotAiSuspended[slot];
+    }
+
+    public void setAiSuspended(int slot, boolean suspended) {
+        slotAiSuspended[slot] = suspended;
+    }
+
+    /** Interned {@link EntityTypes} id, or -1 until the owner resolves it. */
+    public int type(int slot) {
+        return slotType[slot];
+    }
+
+    public void setType(int slot, int type) {
+        if (slotType[slot] == type) return;
+        if (slotEntity[slot] != null) {
+            adjustCensus(slotBucket[slot], slotType[slot], -1);
+            adjustCensus(slotBucket[slot], type, 1);
+        }
+        slotType[slot] = type;
+    }
+
+    public boolean isFrozen(int slot) {
+        return slotFrozen[slot];
+    }
+
+    public void setFrozen(int slot, boolean frozen) {
+        slotFrozen[slot] = frozen;
+    }
+
+    public int bucketOf(int slot) {
+        return slotBucket[slot];
+    }
+
+    /** Records that a player was within range of {@code bucket} during the current pass. */
+    public void markWarm(int bucket) {
+        bucketWarmPass[bucket] = pass;
+    }
+
+    /** Passes since a player was last within range of {@code bucket} (or since the chunk was first indexed). */
+    public int idlePasses(int bucket) {
+        return pass - bucketWarmPass[bucket];
+    }
+
+    public boolean isHibernating(int bucket) {
+        return bucketHibernating[bucket];
+    }
+
+    public void setHibernating(int bucket, boolean hibernating) {
+        bucketHibernating[bucket] = hibernating;
+    }
+
+    /** Members of {@code bucket} whose type is {@code type}. */
+    public int typeCount(int bucket, int type) {
+        int count = census.get(censusKey(bucket, type));
+        return count == LongIntHashMap.MISSING ? 0 : count;
+    }
+
+    /** Upper bound (exclusive) for bucket ids, for callers that walk every chunk. */
+    public int bucketLimit() {
+        return bucketHighWater;
+    }
+
+    /** Whether {@code bucket} currently holds a chunk. */
+    public boolean isBucketLive(int bucket) {
+        return bucketSize[bucket] > 0;
+    }
+
+    /** Passes since the entity was first indexed. */
+    public int age(int slot) {
+        return pass - slotBornPass[slot];
+    }
+
+    public int overloadedCount() {
+        return overloadedCount;
+    }
+
+    /** Copies the buckets currently above the soft cap into {@code out}, growing it if needed. */
+    public int[] copyOverloaded(int[] out) {
+        if (out.length < overloadedCount) out = new int[overloadedCount];
+        System.arraycopy(overloaded, 0, out, 0, overloadedCount);
+        return out;
+    }
+
+    public int bucketSize(int bucket) {
+        return bucketSize[bucket];
+    }
+
+    public long bucketChunk(int bucket) {
+        return bucketChunk[bucket];
+    }
+
+    public int bucketMember(int bucket, int index) {
+        return bucketMembers[bucket][index];
+    }
+
+    private int allocateSlot() {
+        if (freeSlotCount > 0) return freeSlots[--freeSlotCount];
+        if (slotHighWater == slotEntity.length) {
+            int cap = slotHighWater << 1;
+            slotEntity = Arrays.copyOf(slotEntity, cap);
+            slotChunk = Arrays.copyOf(slotChunk, cap);
+            slotBucket = Arrays.copyOf(slotBucket, cap);
+            slotBucketPos = Arrays.copyOf(slotBucketPos, cap);
+            slotSeen = Arrays.copyOf(slotSeen, cap);
+            slotX = Arrays.copyOf(slotX, cap);
+            slotZ = Arrays.copyOf(slotZ, cap);
+            slotTier = Arrays.copyOf(slotTier, cap);
+            slotAiSuspended = Arrays.copyOf(slotAiSuspended, cap);
+            slotFrozen = Arrays.copyOf(slotFrozen, cap);
+            slotType = Arrays.copyOf(slotType, cap);
+            slotBornPass = Arrays.copyOf(slotBornPass, cap);
+        }
+        return slotHighWater++;
+    }
+
+    private void addToBucket(int slot, long chunkKey) {
+        int bucket = bucketByChunk.get(chunkKey);
+        if (bucket == LongIntHashMap.MISSING) {
+            bucket = allocateBucket();
+            bucketChunk[bucket] = chunkKey;
+            bucketByChunk.put(chunkKey, bucket);
+        }
+        int[] members = bucketMembers[bucket];
+        int size = bucketSize[bucket];
+        if (size == members.length) {
+            members = Arrays.copyOf(members, size << 1);
+            bucketMembers[bucket] = members;
+        }
+        members[size] = slot;
+        bucketSize[bucket] = size + 1;
+        adjustCensus(bucket, slotType[slot], 1);
+        mutations++;
+        slotChunk[slot] = chunkKey;
+        slotBucket[slot] = bucket;
+        slotBucketPos[slot] = size;
+        if (size + 1 > softCap && bucketOverloadedPos[bucket] < 0) markOverloaded(bucket);
+    }
+
+    private void removeFromBucket(int slot) {
+        int bucket = slotBucket[slot];
+        int pos = slotBucketPos[slot];
+        int[] members = bucketMembers[bucket];
+        int last = --bucketSize[bucket];
+        adjustCensus(bucket, slotType[slot], -1);
+        mutations++;
+        if (pos != last) {
+            int moved = members[last];
+            members[pos] = moved;
+            slotBucketPos[moved] = pos;
+        }
+        if (bucketSize[bucket] <= softCap && bucketOverloadedPos[bucket] >= 0) unmarkOverloaded(bucket);
+        if (bucketSize[bucket] == 0) releaseBucket(bucket);
+    }
+
+    private static long censusKey(int bucket, int type) {
+        return ((long) bucket << 32) | (type & 0xFFFFFFFFL);
+    }
+
+    private void adjustCensus(int bucket, int type, int delta) {
+        if (type < 0) return;
+        long key = censusKey(bucket, type);
+        int count = census.get(key);
+        int updated = (count == LongIntHashMap.MISSING ? 0 : count) + delta;
+        if (updated > 0) {
+            census.put(key, updated);
+        } else {
+            census.remove(key);
+        }
+    }
+
+    private int allocateBucket() {
+        int bucket;
+        if (freeBucketCount > 0) {
+            bucket = freeBuckets[--freeBucketCount];
+        } else {
+            if (bucketHighWater == bucketChunk.length) {
+                int cap = bucketHighWater << 1;
+                bucketChunk = Arrays.copyOf(bucketChunk, cap);
+                bucketMembers = Arrays.copyOf(bucketMembers, cap);
+                bucketSize = Arrays.copyOf(bucketSize, cap);
+                bucketOverloadedPos = Arrays.copyOf(bucketOverloadedPos, cap);
+                bucketWarmPass = Arrays.copyOf(bucketWarmPass, cap);
+                bucketHibernating = Arrays.copyOf(bucketHibernating, cap);
+            }
+            bucket = bucketHighWater++;
+        }
+        if (bucketMembers[bucket] == null) bucketMembers[bucket] = new int[8];
+        bucketSize[bucket] = 0;
+        bucketOverloadedPos[bucket] = -1;
+        bucketWarmPass[bucket] = pass;
+        bucketHibernating[bucket] = false;
+        return bucket;
+    }
+
+    private void releaseBucket(int bucket) {
+        bucketByChunk.remove(bucketChunk[bucket]);
+        if (freeBucketCount == freeBuckets.length) freeBuckets = Arrays.copyOf(freeBuckets, freeBucketCount << 1);
+        freeBuckets[freeBucketCount++] = bucket;
+    }
+
+    private void markOverloaded(int bucket) {
+        if (overloadedCount == overloaded.length) overloaded = Arrays.copyOf(overloaded, overloadedCount << 1);
+        bucketOverloadedPos[bucket] = overloadedCount;
+        overloaded[overloadedCount++] = bucket;
+    }
+
+    private void unmarkOverloaded(int bucket) {
+        int pos = bucketOverloadedPos[bucket];
+        int last = --overloadedCount;
+        if (pos != last) {
+            int moved = overloaded[last];
+            overloaded[pos] = moved;
+            bucketOverloadedPos[moved] = pos;
+        }
+        bucketOverloadedPos[bucket] = -1;
+    }
+}
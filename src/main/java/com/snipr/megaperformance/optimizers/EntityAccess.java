@@ -0,0 +1,287 @@
+package com.snipr.megaperformance.optimizers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reflective access to entity stores and entities, resolved once per class into cached
+ * {@link MethodHandle}s. Lookups that fail are cached as absent handles, so a missing API costs a single
+ * failed resolution per class instead of one per call. The steady-state hot path does not allocate.
+ */
+public final class EntityAccess {
+
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType DOUBLE_GETTER = MethodType.methodType(double.class, Object.class);
+    private static final MethodType REMOVER = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType FLAG_SETTER = MethodType.methodType(void.class, Object.class, boolean.class);
+    private static final MethodType FLAG_GETTER = MethodType.methodType(boolean.class, Object.class);
+    private static final String[] AI_TOGGLES = {"setAiEnabled", "setAIEnabled", "setAiActive"};
+    private static final String[] FREEZE_TOGGLES = {"setFrozen"};
+    private static final String[] PHYSICS_TOGGLES = {"setPhysicsEnabled", "setMovementEnabled"};
+    private static final String[] REMOVED_FLAGS = {"wasRemoved", "isRemoved"};
+    private static final String[] VALID_FLAGS = {"isValid", "isAlive"};
+    private static final String[] TYPE_GETTERS = {"getTypeId", "getEntityTypeId", "getRoleName", "getEntityType", "getType"};
+    private static final String[] PROTECTION_FLAGS = {"isTamed", "hasCustomName"};
+    private static final String[] PROTECTION_GETTERS = {"getCustomName", "getOwner", "getOwnerUuid", "getOwnerId"};
+
+    private static final ClassValue<StoreHandles> STORES = new ClassValue<StoreHandles>() {
+        @Override
+        protected StoreHandles computeValue(Class<?> type) {
+            return new StoreHandles(type);
+        }
+    };
+
+    private static final ClassValue<EntityHandles> ENTITIES = new ClassValue<EntityHandles>() {
+        @Override
+        protected EntityHandles computeValue(Class<?> type) {
+            return new EntityHandles(type);
+        }
+    };
+
+    private static final ClassValue<VectorHandles> VECTORS = new ClassValue<VectorHandles>() {
+        @Override
+        protected VectorHandles computeValue(Class<?> type) {
+            return new VectorHandles(type);
+        }
+    };
+
+    private EntityAccess() { }
+
+    /** Returns the store's live entity collection, or null when the store exposes none. */
+    public static Collection<?> entities(Object store) {
+        StoreHandles handles = STORES.get(store.getClass());
+        Object result = invokeObject(handles.getAllEntities, store);
+        if (result instanceof Collection) return (Collection<?>) result;
+        result = invokeObject(handles.entitiesField, store);
+        if (result instanceof Collection) return (Collection<?>) result;
+        return null;
+    }
+
+    /** Removes {@code entity} through the store, falling back to the live collection itself. */
+    public static boolean remove(Object store, Collection<?> entities, Object entity) {
+        MethodHandle removeEntity = STORES.get(store.getClass()).removeEntity;
+        if (removeEntity != null) {
+            try {
+                removeEntity.invokeExact(store, entity);
+                return true;
+            } catch (Throwable ignored) { }
+        }
+
+        try {
+            return entities.remove(entity);
+        } catch (Exception ignored) { }
+
+        return false;
+    }
+
+    /**
+     * Whether {@code entity} is still in the world, judged by its own removed/valid flag or, failing that,
+     * by membership when the live collection is a set. Returns false when liveness cannot be told.
+     */
+    public static boolean isLive(Collection<?> entities, Object entity) {
+        EntityHandles handles = ENTITIES.get(entity.getClass());
+        try {
+            if (handles.removedFlag != null) return !(boolean) handles.removedFlag.invokeExact(entity);
+            if (handles.validFlag != null) return (boolean) handles.validFlag.invokeExact(entity);
+            return entities instanceof Set && entities.contains(entity);
+        } catch (Throwable ignored) { }
+        return false;
+    }
+
+    public static boolean isPlayer(Object entity) {
+        return entity != null && ENTITIES.get(entity.getClass()).player;
+    }
+
+    /**
+     * Writes the entity's horizontal position into {@code xz[0]} and {@code xz[1]}. Returns false when
+     * the entity exposes no readable position.
+     */
+    public static boolean locate(Object entity, double[] xz) {
+        Object position = position(entity);
+        return position != null && readXZ(position, xz);
+    }
+
+    /** Writes a position vector's x and z into {@code xz}; returns false when the vector exposes neither. */
+    public static boolean readXZ(Object vector, double[] xz) {
+        VectorHandles handles = VECTORS.get(vector.getClass());
+        if (handles.x == null || handles.z == null) return false;
+        try {
+            xz[0] = (double) handles.x.invokeExact(vector);
+            xz[1] = (double) handles.z.invokeExact(vector);
+            return true;
+        } catch (Throwable ignored) { }
+        return false;
+    }
+
+    /** Toggles the entity's AI if its class exposes a setter for it; returns false otherwise. */
+    public static boolean setAiEnabled(Object entity, boolean enabled) {
+        MethodHandle toggle = ENTITIES.get(entity.getClass()).aiToggle;
+        if (toggle == null) return false;
+        try {
+            toggle.invokeExact(entity, enabled);
+            return true;
+        } catch (Throwable ignored) { }
+        return false;
+    }
+
+    /**
+     * Freezes or unfreezes the entity's physics and movement through whichever toggle its class exposes;
+     * returns false when it exposes none.
+     */
+    public static boolean setFrozen(Object entity, boolean frozen) {
+        EntityHandles handles = ENTITIES.get(entity.getClass());
+        MethodHandle toggle = handles.freezeToggle != null ? handles.freezeToggle : handles.physicsToggle;
+        if (toggle == null) return false;
+        try {
+            toggle.invokeExact(entity, handles.freezeToggle != null ? frozen : !frozen);
+            return true;
+        } catch (Throwable ignored) { }
+        return false;
+    }
+
+    /**
+     * Best-effort type name: the entity's own type id or role when it exposes one, its class name
+     * otherwise. Allocates, so callers resolve it once per entity rather than per pass.
+     */
+    public static String typeName(Object entity) {
+        Object type = invokeObject(ENTITIES.get(entity.getClass()).type, entity);
+        // Only trust values whose string form is stable; an arbitrary object would print its identity hash.
+        String name = type instanceof CharSequence || type instanceof Enum || type instanceof Number
+            ? type.toString() : null;
+        return name != null && !name.isEmpty() ? name : entity.getClass().getSimpleName();
+    }
+
+    /** True for entities a player has invested in: tamed, owned or custom-named. */
+    public static boolean isProtected(Object entity) {
+        EntityHandles handles = ENTITIES.get(entity.getClass());
+        for (MethodHandle flag : handles.protectionFlags) {
+            try {
+                if ((boolean) flag.invokeExact(entity)) return true;
+            } catch (Throwable ignored) { }
+        }
+        for (MethodHandle getter : handles.protectionGetters) {
+            Object value = invokeObject(getter, entity);
+            if (value instanceof CharSequence ? ((CharSequence) value).length() > 0 : value != null) return true;
+        }
+        return false;
+    }
+
+    private static Object position(Object entity) {
+        EntityHandles handles = ENTITIES.get(entity.getClass());
+        if (handles.position != null) return invokeObject(handles.position, entity);
+        Object transform = invokeObject(handles.transform, entity);
+        if (transform == null) return null;
+        return invokeObject(ENTITIES.get(transform.getClass()).position, transform);
+    }
+
+    private static Object invokeObject(MethodHandle handle, Object target) {
+        if (handle == null) return null;
+        try {
+            return (Object) handle.invokeExact(target);
+        } catch (Throwable ignored) { }
+        return null;
+    }
+
+    private static MethodHandle method(Class<?> owner, String name, MethodType type, Class<?>... params) {
+        try {
+            Method m = owner.getMethod(name, params);
+            return MethodHandles.publicLookup().unreflect(m).asType(type);
+        } catch (Exception ignored) { }
+        return null;
+    }
+
+    private static MethodHandle firstMethod(Class<?> owner, String[] names, MethodType type, Class<?>... params) {
+        for (String name : names) {
+            MethodHandle handle = method(owner, name, type, params);
+            if (handle != null) return handle;
+        }
+        return null;
+    }
+
+    private static MethodHandle[] allMethods(Class<?> owner, String[] names, MethodType type) {
+        List<MethodHandle> found = new ArrayList<>();
+        for (String name : names) {
+            MethodHandle handle = method(owner, name, type);
+            if (handle != null) found.add(handle);
+        }
+        return found.toArray(new MethodHandle[0]);
+    }
+
+    private static MethodHandle declaredGetter(Class<?> owner, String name, MethodType type) {
+        try {
+            Field f = owner.getDeclaredField(name);
+            f.setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(f).asType(type);
+        } catch (Exception ignored) { }
+        return null;
+    }
+
+    private static MethodHandle publicGetter(Class<?> owner, String name, MethodType type) {
+        try {
+            return MethodHandles.publicLookup().unreflectGetter(owner.getField(name)).asType(type);
+        } catch (Exception ignored) { }
+        return null;
+    }
+
+    private static final class StoreHandles {
+        final MethodHandle getAllEntities;
+        final MethodHandle removeEntity;
+        final MethodHandle entitiesField;
+
+        StoreHandles(Class<?> type) {
+            this.getAllEntities = method(type, "getAllEntities", OBJECT_GETTER);
+            this.removeEntity = method(type, "removeEntity", REMOVER, Object.class);
+            this.entitiesField = declaredGetter(type, "entities", OBJECT_GETTER);
+        }
+    }
+
+    private static final class EntityHandles {
+        final boolean player;
+        final MethodHandle position;
+        final MethodHandle transform;
+        final MethodHandle aiToggle;
+        final MethodHandle freezeToggle;
+        final MethodHandle physicsToggle;
+        final MethodHandle removedFlag;
+        final MethodHandle validFlag;
+        final MethodHandle type;
+        final MethodHandle[] protectionFlags;
+        final MethodHandle[] protectionGetters;
+
+        EntityHandles(Class<?> type) {
+            this.player = type.getSimpleName().toLowerCase().contains("player");
+            this.position = method(type, "getPosition", OBJECT_GETTER);
+            this.transform = position == null ? method(type, "getTransform", OBJECT_GETTER) : null;
+            this.aiToggle = firstMethod(type, AI_TOGGLES, FLAG_SETTER, boolean.class);
+            this.freezeToggle = firstMethod(type, FREEZE_TOGGLES, FLAG_SETTER, boolean.class);
+            this.physicsToggle = freezeToggle == null ? firstMethod(type, PHYSICS_TOGGLES, FLAG_SETTER, boolean.class) : null;
+            this.removedFlag = firstMethod(type, REMOVED_FLAGS, FLAG_GETTER);
+            this.validFlag = removedFlag == null ? firstMethod(type, VALID_FLAGS, FLAG_GETTER) : null;
+            this.type = firstMethod(type, TYPE_GETTERS, OBJECT_GETTER);
+            this.protectionFlags = allMethods(type, PROTECTION_FLAGS, FLAG_GETTER);
+            this.protectionGetters = allMethods(type, PROTECTION_GETTERS, OBJECT_GETTER);
+        }
+    }
+
+    private static final class VectorHandles {
+        final MethodHandle x;
+        final MethodHandle z;
+
+        VectorHandles(Class<?> type) {
+            this.x = coordinate(type, "getX", "x");
+            this.z = coordinate(type, "getZ", "z");
+        }
+
+        private static MethodHandle coordinate(Class<?> type, String getter, String field) {
+            MethodHandle handle = method(type, getter, DOUBLE_GETTER);
+            return handle != null ? handle : publicGetter(type, field, DOUBLE_GETTER);
+        }
+    }
+}
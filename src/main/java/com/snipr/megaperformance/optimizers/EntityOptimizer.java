@@ -3,91 +3,468 @@ package com.snipr.megaperformance.optimizers;
 import com.hypixel.hytale.logger.HytaleLogger;
 import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.snipr.megaperformance.config.MegaPerformanceConfig;
+import com.snipr.megaperformance.metrics.PerfStats;
+import com.snipr.megaperformance.scheduler.BudgetedTask;
+import com.snipr.megaperformance.util.IdentityIntMap;
+import com.snipr.megaperformance.util.TopKHeap;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 
 /**
- * Attempts soft caps and periodic trimming on non-player entities using reflection-friendly access.
+ * Attempts soft caps and periodic trimming on non-player entities through {@link EntityAccess}.
+ * Entities are tracked per chunk in a {@link ChunkEntityIndex}, so the cap really applies per chunk and
+ * trimming only visits chunks that are over it.
+ * Each pass buckets entities into activation tiers by distance to the nearest player: near entities
+ * stay fully live and are never trimmed, and far entities only get AI (and a fresh position read) every
+ * {@code distantAiSkipEvery} passes. In an overloaded chunk the excess is chosen by {@link TrimPolicy}
+ * score (age, distance, type weight) through a bounded {@link TopKHeap}; protected types and tamed,
+ * owned or named entities are never picked.
+ * Type weights, protection, per-type AI intervals and per-type chunk caps come from the world's
+ * {@link EntityPolicies}; per-type caps are checked against the index's census, so a chunk over a type
+ * cap gets a trim task for just that type even when its total is under the soft cap.
+ * Under load the cap tightens by up to {@link #PRESSURE_CAP_SHRINK} and the AI skip interval stretches
+ * up to double, driven by the world's tick pressure.
+ * Chunks that no player has come within the mid radius of for {@code hibernateAfterSeconds} hibernate:
+ * their entities get AI and physics frozen and are no longer position-read or re-tiered until a player
+ * comes back in range, at which point the whole chunk thaws at once.
+ * Before trimming, dropped items of the same kind within {@code itemMergeRadius} are folded into one
+ * stack by {@link ItemMerger}, so item piles shrink without losing anything.
+ * When the index changed, at most every {@link #RANK_INTERVAL_MS}, the pass ends with a budgeted phase
+ * that re-ranks the most crowded chunks from the per-type census and publishes them as an immutable
+ * {@link Hotspots} for commands and snapshots.
+ * A pass is split into phases with a cursor each, so it can yield whenever the slice budget runs out
+ * and resume on the next slice instead of stalling the world thread.
  * All operations are best-effort and safely wrapped to avoid crashing the server.
  */
 public class EntityOptimizer {
 
-    private long tickCounter = 0;
+    public static final long PASS_INTERVAL_MS = 1000;
+    public static final double PRESSURE_CAP_SHRINK = 0.4;
+    /** Minimum time between hotspot re-rankings, so a busy world does not re-rank on every pass. */
+    public static final long RANK_INTERVAL_MS = 5000;
 
-    public void tick(World world, int softCapPerChunk, int aiSkipEvery, boolean aggressiveTrim, HytaleLogger logger) {
+    private static final int PHASE_IDLE = 0;
+    private static final int PHASE_SCAN = 1;
+    private static final int PHASE_SWEEP = 2;
+    private static final int PHASE_ACTIVATE = 3;
+    private static final int PHASE_MERGE = 4;
+    private static final int PHASE_TRIM = 5;
+    private static final int PHASE_RANK = 6;
+
+    /** Entities scanned between deadline checks; keeps nanoTime calls off the per-entity path. */
+    private static final int CHECK_MASK = 63;
+    private static final int SWEEP_STEP = 256;
+    private static final int VICTIMS_NOT_SELECTED = -1;
+    /** Trim task type meaning "any type, down to the soft cap". */
+    private static final int ANY_TYPE = -1;
+
+    private final long passIntervalMs;
+    private final ChunkEntityIndex index = new ChunkEntityIndex();
+    private final ActivationRange activation = new ActivationRange();
+    private final TrimPolicy trimPolicy = new TrimPolicy();
+    private final EntityPolicies policies = new EntityPolicies();
+    private final TopKHeap victims = new TopKHeap();
+    private final Hotspots.Ranker ranker = new Hotspots.Ranker();
+    private final ItemMerger itemMerger = new ItemMerger();
+    private final double[] xz = new double[2];
+
+    private int phase = PHASE_IDLE;
+    private long lastPassStartMs;
+    private long passNumber;
+    private EntityStore store;
+    private Collection<?> entities;
+    private int cap;
+    private int skipEvery;
+    private double aiStretch = 1;
+    private int hibernatePasses;
+    private boolean lowAiDepth;
+    private boolean mergeItems;
+    private double itemMergeRadius;
+    private boolean trimPass;
+
+    private Object[] snapshot = new Object[256];
+    private int snapshotSize;
+    private int cursor;
+
+    private int[] overloadedScratch = new int[16];
+    private int[] taskBucket = new int[16];
+    private int[] taskType = new int[16];
+    private int taskCount;
+    private int taskCursor;
+    private int victimCursor;
+    private int memberCursor;
+    private int trimmed;
+    private int merged;
+    private int suspended;
+    private int hibernated;
+    private long rankedMutations;
+    private long lastRankMs;
+    private long passNanos;
+    private volatile Hotspots hotspots = Hotspots.EMPTY;
+
+    public EntityOptimizer() {
+        this(PASS_INTERVAL_MS);
+    }
+
+    /** Benchmarks pass 0 to run passes back to back. */
+    EntityOptimizer(long passIntervalMs) {
+        this.passIntervalMs = passIntervalMs;
+    }
+
+    /**
+     * Advances the current pass until {@code deadlineNanos}, starting a new pass every
+     * {@link #PASS_INTERVAL_MS}. Trimming runs on every {@code distantAiSkipEvery}-th pass.
+     * {@code pressure} (0..1) is sampled when a pass begins.
+     */
+    public void runSlice(World world, MegaPerformanceConfig.Entities cfg, MegaPerformanceConfig.Bundled bundled,
+                         double pressure, long deadlineNanos, HytaleLogger logger) {
         if (world == null) return;
-        tickCounter++;
-        if (tickCounter % aiSkipEvery != 0) return;
+        if (phase == PHASE_IDLE && !beginPass(world, cfg, bundled, pressure)) return;
+        long sliceStart = System.nanoTime();
+        boolean done = advance(deadlineNanos);
+        passNanos += System.nanoTime() - sliceStart;
+        if (done) finishPass(logger);
+    }
+
+    private boolean advance(long deadlineNanos) {
+        if (phase == PHASE_SCAN && !scan(deadlineNanos)) return false;
+        if (phase == PHASE_SWEEP && !sweep(deadlineNanos)) return false;
+        if (phase == PHASE_ACTIVATE && !activate(deadlineNanos)) return false;
+        if (phase == PHASE_MERGE && !merge(deadlineNanos)) return false;
+        if (phase == PHASE_TRIM && !trim(deadlineNanos)) return false;
+        return phase != PHASE_RANK || ranker.scan(index, deadlineNanos);
+    }
+
+    /** Whether a pass ran out of budget and is waiting for the next slice to resume. */
+    public boolean hasBacklog() {
+        return phase != PHASE_IDLE;
+    }
+
+    /** Most crowded chunks as of the last re-ranking; safe to read from any thread. */
+    public Hotspots hotspots() {
+        return hotspots;
+    }
+
+    /** Re-enables AI (and unfreezes hibernated entities) for everything this optimizer suspended. Must run on the world thread. */
+    public void restoreActivation() {
+        for (int slot = 0; slot < index.slotLimit(); slot++) {
+            Object e = index.entity(slot);
+            if (e != null) thawSlot(slot);
+            if (e != null && index.isAiSuspended(slot) && EntityAccess.setAiEnabled(e, true)) {
+                index.setAiSuspended(slot, false);
+            }
+        }
+    }
+
+    private boolean beginPass(World world, MegaPerformanceConfig.Entities cfg, MegaPerformanceConfig.Bundled bundled,
+                              double pressure) {
+        long now = System.currentTimeMillis();
+        if (now - lastPassStartMs < passIntervalMs) return false;
 
-        EntityStore store = world.getEntityStore();
-        if (store == null) return;
+        EntityStore s = world.getEntityStore();
+        if (s == null) return false;
+        Collection<?> live = EntityAccess.entities(s);
+        if (live == null) return false;
+
+        lastPassStartMs = now;
+        passNumber++;
+        store = s;
+        entities = live;
+        snapshotSize = live.size();
+        Object[] copy = live.toArray(snapshot);
+        if (copy != snapshot) {
+            snapshot = copy;
+            snapshotSize = copy.length;
+        }
+        cursor = 0;
+        passNanos = 0;
 
-        Collection<?> entities = resolveEntities(store);
-        if (entities == null) return;
+        int softCap = Math.max(1, cfg.softCapPerChunk);
+        if (bundled.aggressiveTrimming) softCap -= softCap / 4;
+        cap = Math.max(1, (int) Math.round(softCap * (1 - PRESSURE_CAP_SHRINK * pressure)));
+        aiStretch = 1 + pressure;
+        skipEvery = Math.max(1, (int) Math.round(cfg.distantAiSkipEvery * aiStretch));
+        lowAiDepth = bundled.lowAiDepth;
+        mergeItems = cfg.mergeItems;
+        itemMergeRadius = cfg.itemMergeRadius;
+        hibernatePasses = cfg.hibernateAfterSeconds <= 0 ? 0
+            : (int) Math.max(1, cfg.hibernateAfterSeconds * 1000L / Math.max(1, passIntervalMs > 0 ? passIntervalMs : PASS_INTERVAL_MS));
+        trimPass = passNumber % skipEvery == 0;
+        activation.configure(cfg.nearRadius, cfg.midRadius);
+        trimPolicy.configure(cfg);
+        policies.configure(cfg);
+        activation.clearPlayers();
+        index.setSoftCap(cap);
+        index.beginPass();
+        phase = PHASE_SCAN;
+        return true;
+    }
 
-        int total = entities.size();
-        if (total <= softCapPerChunk && !aggressiveTrim) return;
+    private boolean scan(long deadlineNanos) {
+        Object[] snap = snapshot;
+        while (cursor < snapshotSize) {
+            Object e = snap[cursor];
+            snap[cursor++] = null;
+            if (e != null) observe(e);
+            if ((cursor & CHECK_MASK) == 0 && BudgetedTask.expired(deadlineNanos)) return false;
+        }
+        cursor = 0;
+        phase = PHASE_SWEEP;
+        return true;
+    }
 
-        int trimmed = 0;
-        int target = Math.max(0, total - softCapPerChunk);
-        List<Object> toRemove = new ArrayList<>();
+    private void observe(Object e) {
+        if (EntityAccess.isPlayer(e)) {
+            if (EntityAccess.locate(e, xz)) activation.addPlayer(xz[0], xz[1]);
+            return;
+        }
+        int slot = index.slotOf(e);
+        if (slot != IdentityIntMap.MISSING
+            && (index.isFrozen(slot) || (index.tier(slot) == ActivationRange.TIER_FAR && !isWakePass(slot)))) {
+            index.markSeen(slot);
+        } else if (EntityAccess.locate(e, xz)) {
+            slot = index.observe(e, xz[0], xz[1]);
+            if (index.type(slot) < 0) index.setType(slot, EntityTypes.idOf(EntityAccess.typeName(e)));
+        }
+    }
 
-        for (Object e : entities) {
-            if (isPlayerEntity(e)) continue;
-            toRemove.add(e);
-            if (toRemove.size() >= target) break;
+    private boolean sweep(long deadlineNanos) {
+        while (cursor < index.slotLimit()) {
+            cursor = index.sweepStale(cursor, SWEEP_STEP);
+            if (BudgetedTask.expired(deadlineNanos)) return false;
         }
+        cursor = 0;
+        suspended = 0;
+        hibernated = 0;
+        phase = PHASE_ACTIVATE;
+        return true;
+    }
 
-        for (Object e : toRemove) {
-            if (tryRemove(store, entities, e)) {
-                trimmed++;
+    private boolean activate(long deadlineNanos) {
+        while (cursor < index.slotLimit()) {
+            int slot = cursor++;
+            Object e = index.entity(slot);
+            if (e != null) {
+                byte tier = activation.classify(index.x(slot), index.z(slot));
+                index.setTier(slot, tier);
+                if (hibernate(slot, tier)) {
+                    hibernated++;
+                } else {
+                    boolean aiOn = tier == ActivationRange.TIER_NEAR
+                        || (tier == ActivationRange.TIER_MID && (!lowAiDepth || isWakePass(slot)))
+                        || (tier == ActivationRange.TIER_FAR && !lowAiDepth && isWakePass(slot));
+                    if (aiOn == index.isAiSuspended(slot) && EntityAccess.setAiEnabled(e, aiOn)) {
+                        index.setAiSuspended(slot, !aiOn);
+                    }
+                    if (index.isAiSuspended(slot)) suspended++;
+                }
             }
+            if ((cursor & CHECK_MASK) == 0 && BudgetedTask.expired(deadlineNanos)) return false;
         }
+        cursor = 0;
+        merged = 0;
+        itemMerger.begin(itemMergeRadius);
+        phase = PHASE_MERGE;
+        return true;
+    }
 
-        if (trimmed > 0) {
-            logger.atInfo().log("[MegaPerf] Trimmed %d entities (total before=%d, cap=%d)", trimmed, total, softCapPerChunk);
+    /** Folds nearby same-kind item stacks before trimming, so piles of drops stop counting against the cap. */
+    private boolean merge(long deadlineNanos) {
+        while (mergeItems && cursor < index.slotLimit()) {
+            int slot = cursor++;
+            if (index.entity(slot) != null && itemMerger.offer(index, slot, store, entities)) {
+                index.remove(slot);
+                merged++;
+                PerfStats.ITEMS_MERGED.increment();
+            }
+            if ((cursor & CHECK_MASK) == 0 && BudgetedTask.expired(deadlineNanos)) return false;
         }
+        planTrims();
+        taskCursor = 0;
+        victimCursor = VICTIMS_NOT_SELECTED;
+        memberCursor = 0;
+        trimmed = 0;
+        phase = PHASE_TRIM;
+        return true;
     }
 
-    @SuppressWarnings("unchecked")
-    private Collection<?> resolveEntities(EntityStore store) {
-        try {
-            Method getAll = store.getClass().getMethod("getAllEntities");
-            Object result = getAll.invoke(store);
-            if (result instanceof Collection) return (Collection<?>) result;
-        } catch (Exception ignored) { }
+    /**
+     * Freezes members of chunks idle for {@link #hibernatePasses} and thaws a whole chunk as soon as one
+     * member is back within the mid radius. Returns true while {@code slot} stays frozen.
+     */
+    private boolean hibernate(int slot, byte tier) {
+        int bucket = index.bucketOf(slot);
+        if (hibernatePasses == 0 || tier != ActivationRange.TIER_FAR) {
+            index.markWarm(bucket);
+            if (index.isHibernating(bucket)) thaw(bucket);
+            return false;
+        }
+        if (!index.isHibernating(bucket)) {
+            if (index.idlePasses(bucket) < hibernatePasses) return false;
+            index.setHibernating(bucket, true);
+            PerfStats.CHUNKS_HIBERNATED.increment();
+        }
+        if (!index.isFrozen(slot)) {
+            Object e = index.entity(slot);
+            // AI is the part that must stop; physics is frozen too when the entity exposes a toggle.
+            if (EntityAccess.setAiEnabled(e, false)) {
+                EntityAccess.setFrozen(e, true);
+                index.setAiSuspended(slot, true);
+                index.setFrozen(slot, true);
+            }
+        }
+        return index.isFrozen(slot);
+    }
 
-        try {
-            Field f = store.getClass().getDeclaredField("entities");
-            f.setAccessible(true);
-            Object result = f.get(store);
-            if (result instanceof Collection) return (Collection<?>) result;
-        } catch (Exception ignored) { }
+    private void thaw(int bucket) {
+        int size = index.bucketSize(bucket);
+        for (int i = 0; i < size; i++) {
+            thawSlot(index.bucketMember(bucket, i));
+        }
+        index.setHibernating(bucket, false);
+        PerfStats.CHUNKS_THAWED.increment();
+    }
 
-        return null;
+    private void thawSlot(int slot) {
+        if (!index.isFrozen(slot)) return;
+        Object e = index.entity(slot);
+        EntityAccess.setFrozen(e, false);
+        if (EntityAccess.setAiEnabled(e, true)) index.setAiSuspended(slot, false);
+        index.setFrozen(slot, false);
     }
 
-    private boolean tryRemove(EntityStore store, Collection<?> entities, Object entity) {
-        try {
-            Method removeEntity = store.getClass().getMethod("removeEntity", Object.class);
-            removeEntity.invoke(store, entity);
-            return true;
-        } catch (Exception ignored) { }
+    /**
+     * Queues one trim task per (chunk, type) over its type cap, then one per chunk over the soft cap.
+     * Type caps go first so their removals count towards the overall cap of the same chunk.
+     */
+    private void planTrims() {
+        taskCount = 0;
+        if (!trimPass) return;
+        policies.compileAll();
+        boolean capped = false;
+        for (int l = 0; l < policies.layerCount() && !capped; l++) {
+            capped = policies.cappedCount(l) > 0;
+        }
+        for (int bucket = 0; capped && bucket < index.bucketLimit(); bucket++) {
+            if (!index.isBucketLive(bucket)) continue;
+            int layer = policies.layer(index.bucketChunk(bucket));
+            int[] types = policies.cappedTypes(layer);
+            for (int i = 0; i < policies.cappedCount(layer); i++) {
+                int type = types[i];
+                if (index.typeCount(bucket, type) > policies.maxPerChunk(layer, type)) addTask(bucket, type);
+            }
+        }
+        int overloaded = index.overloadedCount();
+        overloadedScratch = index.copyOverloaded(overloadedScratch);
+        for (int i = 0; i < overloaded; i++) {
+            addTask(overloadedScratch[i], ANY_TYPE);
+        }
+    }
 
-        try {
-            return entities.remove(entity);
-        } catch (Exception ignored) { }
+    private void addTask(int bucket, int type) {
+        if (taskCount == taskBucket.length) {
+            taskBucket = Arrays.copyOf(taskBucket, taskCount << 1);
+            taskType = Arrays.copyOf(taskType, taskCount << 1);
+        }
+        taskBucket[taskCount] = bucket;
+        taskType[taskCount++] = type;
+    }
 
-        return false;
+    private boolean trim(long deadlineNanos) {
+        int firstTask = taskCursor;
+        while (taskCursor < taskCount) {
+            if (taskCursor != firstTask && BudgetedTask.expired(deadlineNanos)) return false;
+            if (victimCursor == VICTIMS_NOT_SELECTED) {
+                if (!selectVictims(taskBucket[taskCursor], taskType[taskCursor], deadlineNanos)) return false;
+                victimCursor = 0;
+            }
+            int firstVictim = victimCursor;
+            while (victimCursor < victims.size()) {
+                if (victimCursor != firstVictim && BudgetedTask.expired(deadlineNanos)) return false;
+                int slot = (int) victims.id(victimCursor++);
+                Object e = index.entity(slot);
+                if (e != null && EntityAccess.remove(store, entities, e)) {
+                    index.remove(slot);
+                    trimmed++;
+                }
+            }
+            taskCursor++;
+            victimCursor = VICTIMS_NOT_SELECTED;
+            memberCursor = 0;
+        }
+        long now = System.currentTimeMillis();
+        if (index.mutationCount() != rankedMutations && now - lastRankMs >= RANK_INTERVAL_MS) {
+            ranker.begin();
+            phase = PHASE_RANK;
+        }
+        return true;
+    }
+
+    /**
+     * Keeps the worst trimmable members of the bucket in {@link #victims}: as many as the chunk is over
+     * the soft cap for {@link #ANY_TYPE}, otherwise as many of {@code onlyType} as it is over that type's cap.
+     * The excess is re-read when selection starts, since earlier tasks may already have trimmed the chunk.
+     * Resumable: returns false when the deadline hits mid-bucket and picks up at {@link #memberCursor}.
+     */
+    private boolean selectVictims(int bucket, int onlyType, long deadlineNanos) {
+        int layer = policies.layer(index.bucketChunk(bucket));
+        int size = index.bucketSize(bucket);
+        if (memberCursor == 0) {
+            int excess = onlyType == ANY_TYPE
+                ? size - cap
+                : index.typeCount(bucket, onlyType) - policies.maxPerChunk(layer, onlyType);
+            victims.reset(Math.max(0, excess));
+            if (excess <= 0) return true;
+        }
+        int firstMember = memberCursor;
+        while (memberCursor < size) {
+            boolean check = memberCursor != firstMember && (memberCursor & CHECK_MASK) == 0;
+            if (check && BudgetedTask.expired(deadlineNanos)) return false;
+            int slot = index.bucketMember(bucket, memberCursor++);
+            if (index.tier(slot) == ActivationRange.TIER_NEAR) continue;
+            int type = index.type(slot);
+            if (onlyType != ANY_TYPE && type != onlyType) continue;
+            if (policies.isProtected(layer, type) || EntityAccess.isProtected(index.entity(slot))) continue;
+            double nearestSq = activation.nearestWithinMidSq(index.x(slot), index.z(slot));
+            victims.offer(slot, trimPolicy.score(index.age(slot), nearestSq, policies.weight(layer, type)));
+        }
+        return true;
     }
 
-    private boolean isPlayerEntity(Object entity) {
-        if (entity == null) return false;
-        String name = entity.getClass().getSimpleName().toLowerCase();
-        return name.contains("player");
+    private void finishPass(HytaleLogger logger) {
+        PerfStats.OPTIMIZER_PASS.record(passNanos);
+        if (trimPass) PerfStats.TRIMS_PER_PASS.record(trimmed);
+        if (trimmed > 0) PerfStats.ENTITIES_TRIMMED.add(trimmed);
+        if (merged > 0) {
+            logger.atInfo().log("[MegaPerf] Merged %d item stacks into nearby stacks (indexed=%d)", merged, index.size());
+        }
+        if (trimmed > 0) {
+            logger.atInfo().log("[MegaPerf] Trimmed %d entities in %d trim tasks (indexed=%d, cap=%d, aiSuspended=%d, hibernated=%d)",
+                trimmed, taskCount, index.size(), cap, suspended, hibernated);
+        }
+        if (phase == PHASE_RANK) {
+            lastRankMs = System.currentTimeMillis();
+            rankedMutations = index.mutationCount();
+            hotspots = ranker.finish(index, lastRankMs);
+        }
+        store = null;
+        entities = null;
+        phase = PHASE_IDLE;
+    }
+
+    /**
+     * Staggers wake-ups by slot so throttled entities do not all resume AI on the same pass. Types with
+     * their own {@code distantAiSkipEvery} policy use it, stretched by the same pressure factor.
+     */
+    private boolean isWakePass(int slot) {
+        int every = skipEvery;
+        int type = index.type(slot);
+        if (type >= 0) {
+            int own = policies.aiSkipEvery(policies.layer(index.chunkOfSlot(slot)), type);
+            if (own != EntityPolicies.DEFAULT_SKIP) every = Math.max(1, (int) Math.round(own * aiStretch));
+        }
+        return (passNumber + slot) % every == 0;
     }
 }
@@ -0,0 +1,215 @@
+package com.snipr.megaperformance.optimizers;
+
+import com.snipr.megaperformance.config.MegaPerformanceConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-entity settings for one world, compiled from {@code typeWeights}, {@code protectedTypes} and the
+ * world's {@link MegaPerformanceConfig.PolicyRule}s into flat arrays indexed by {@link EntityTypes} id.
+ * Layer 0 holds the region-less result; each region rule gets its own layer on top of it, and a chunk
+ * uses the layer of the last region rule that covers it. Name matching only happens when a new type id
+ * is compiled, so every decision in the optimizer loop is an array read. Each layer keeps a compiled-up-to
+ * watermark separate from its array capacity, so ids interned after an earlier lookup are still compiled
+ * against the rules instead of keeping the defaults their pre-grown slots started with.
+ */
+final class EntityPolicies {
+
+    static final int NO_LIMIT = Integer.MAX_VALUE;
+    /** Returned by {@link #aiSkipEvery} when no rule sets an interval for the type. */
+    static final int DEFAULT_SKIP = 0;
+
+    private MegaPerformanceConfig.Entities configured;
+    private Map<String, Double> weights = new HashMap<>();
+    private Set<String> protectedTypes = new HashSet<>();
+    private MegaPerformanceConfig.PolicyRule[] globalRules = new MegaPerformanceConfig.PolicyRule[0];
+    private MegaPerformanceConfig.PolicyRule[] regionRules = new MegaPerformanceConfig.PolicyRule[0];
+    private int[] regionMinX = new int[0];
+    private int[] regionMaxX = new int[0];
+    private int[] regionMinZ = new int[0];
+    private int[] regionMaxZ = new int[0];
+    private Layer[] layers = {new Layer()};
+
+    /** Recompiles only when handed a different config object; snapshots are never mutated in place. */
+    void configure(MegaPerformanceConfig.Entities cfg) {
+        if (cfg == configured) return;
+        configured = cfg;
+        Map<String, Double> w = new HashMap<>();
+        if (cfg.typeWeights != null) {
+            for (Map.Entry<String, Double> e : cfg.typeWeights.entrySet()) {
+                if (e.getKey() != null && e.getValue() != null) w.put(e.getKey().toLowerCase(Locale.ROOT), e.getValue());
+            }
+        }
+        Set<String> p = new HashSet<>();
+        if (cfg.protectedTypes != null) {
+            for (String type : cfg.protectedTypes) {
+                if (type != null) p.add(type.toLowerCase(Locale.ROOT));
+            }
+        }
+        List<MegaPerformanceConfig.PolicyRule> global = new ArrayList<>();
+        List<MegaPerformanceConfig.PolicyRule> regional = new ArrayList<>();
+        if (cfg.policies != null) {
+            for (MegaPerformanceConfig.PolicyRule rule : cfg.policies) {
+                if (rule == null) continue;
+                (rule.region != null ? regional : global).add(rule);
+            }
+        }
+        weights = w;
+        protectedTypes = p;
+        globalRules = global.toArray(new MegaPerformanceConfig.PolicyRule[0]);
+        regionRules = regional.toArray(new MegaPerformanceConfig.PolicyRule[0]);
+        int regions = regionRules.length;
+        regionMinX = new int[regions];
+        regionMaxX = new int[regions];
+        regionMinZ = new int[regions];
+        regionMaxZ = new int[regions];
+        for (int r = 0; r < regions; r++) {
+            MegaPerformanceConfig.Region region = regionRules[r].region;
+            regionMinX[r] = Math.min(region.minX, region.maxX) >> ChunkEntityIndex.CHUNK_SHIFT;
+            regionMaxX[r] = Math.max(region.minX, region.maxX) >> ChunkEntityIndex.CHUNK_SHIFT;
+            regionMinZ[r] = Math.min(region.minZ, region.maxZ) >> ChunkEntityIndex.CHUNK_SHIFT;
+            regionMaxZ[r] = Math.max(region.minZ, region.maxZ) >> ChunkEntityIndex.CHUNK_SHIFT;
+        }
+        layers = new Layer[regions + 1];
+        for (int l = 0; l < layers.length; l++) {
+            layers[l] = new Layer();
+        }
+    }
+
+    int layerCount() {
+        return layers.length;
+    }
+
+    /** Layer for a chunk: the last region rule covering it, or 0 when none does. */
+    int layer(long chunkKey) {
+        int r = regionRules.length;
+        if (r == 0) return 0;
+        int cx = ChunkEntityIndex.chunkX(chunkKey);
+        int cz = ChunkEntityIndex.chunkZ(chunkKey);
+        while (--r >= 0) {
+            if (cx >= regionMinX[r] && cx <= regionMaxX[r] && cz >= regionMinZ[r] && cz <= regionMaxZ[r]) return r + 1;
+        }
+        return 0;
+    }
+
+    /** Compiles every type id handed out so far, so the capped-type lists are complete. */
+    void compileAll() {
+        int count = EntityTypes.count();
+        for (int l = 0; l < layers.length; l++) {
+            if (layers[l].compiled < count) compile(l, count - 1);
+        }
+    }
+
+    double weight(int layer, int type) {
+        if (type < 0) return 1.0;
+        Layer row = row(layer, type);
+        return row.weight[type];
+    }
+
+    boolean isProtected(int layer, int type) {
+        return type >= 0 && row(layer, type).protect[type];
+    }
+
+    /** Per-type far AI interval, or {@link #DEFAULT_SKIP} to use the world's. */
+    int aiSkipEvery(int layer, int type) {
+        return type < 0 ? DEFAULT_SKIP : row(layer, type).aiSkipEvery[type];
+    }
+
+    int maxPerChunk(int layer, int type) {
+        return type < 0 ? NO_LIMIT : row(layer, type).maxPerChunk[type];
+    }
+
+    /** Type ids with a per-chunk cap in {@code layer}; valid entries are {@code [0, cappedCount(layer))}. */
+    int[] cappedTypes(int layer) {
+        return layers[layer].capped;
+    }
+
+    int cappedCount(int layer) {
+        return layers[layer].cappedCount;
+    }
+
+    private Layer row(int layer, int type) {
+        Layer row = layers[layer];
+        if (type >= row.compiled) compile(layer, type);
+        return row;
+    }
+
+    /**
+     * Compiles ids from the layer's watermark up to every id interned so far (and at least {@code type}),
+     * growing the arrays first when needed. Compilation stops at the first id without a name yet; that id
+     * and everything after it read as defaults until a later call compiles them.
+     */
+    private void compile(int layer, int type) {
+        Layer row = layers[layer];
+        int limit = Math.max(type + 1, EntityTypes.count());
+        if (limit > row.weight.length) grow(row, Math.max(limit, Math.max(16, row.weight.length << 1)));
+        int id = row.compiled;
+        for (; id < limit; id++) {
+            String name = EntityTypes.name(id);
+            if (name == null) break;
+            Double weight = weights.get(name);
+            row.weight[id] = weight != null ? weight : 1.0;
+            row.protect[id] = protectedTypes.contains(name);
+            row.aiSkipEvery[id] = DEFAULT_SKIP;
+            row.maxPerChunk[id] = NO_LIMIT;
+            for (MegaPerformanceConfig.PolicyRule rule : globalRules) {
+                apply(row, id, name, rule);
+            }
+            if (layer > 0) apply(row, id, name, regionRules[layer - 1]);
+            row.protect[id] |= row.weight[id] <= 0;
+            if (row.maxPerChunk[id] != NO_LIMIT) {
+                if (row.cappedCount == row.capped.length) row.capped = Arrays.copyOf(row.capped, Math.max(4, row.cappedCount << 1));
+                row.capped[row.cappedCount++] = id;
+            }
+        }
+        row.compiled = id;
+    }
+
+    /** Grows the layer's arrays to {@code size}, with defaults in the new, not yet compiled slots. */
+    private static void grow(Layer row, int size) {
+        int from = row.weight.length;
+        row.weight = Arrays.copyOf(row.weight, size);
+        row.protect = Arrays.copyOf(row.protect, size);
+        row.aiSkipEvery = Arrays.copyOf(row.aiSkipEvery, size);
+        row.maxPerChunk = Arrays.copyOf(row.maxPerChunk, size);
+        Arrays.fill(row.weight, from, size, 1.0);
+        Arrays.fill(row.aiSkipEvery, from, size, DEFAULT_SKIP);
+        Arrays.fill(row.maxPerChunk, from, size, NO_LIMIT);
+    }
+
+    private static void apply(Layer row, int id, String name, MegaPerformanceConfig.PolicyRule rule) {
+        if (!matches(rule.types, name)) return;
+        if (rule.trimWeight != null) row.weight[id] = rule.trimWeight;
+        if (rule.protect != null) row.protect[id] = rule.protect;
+        if (rule.distantAiSkipEvery != null) row.aiSkipEvery[id] = Math.max(1, rule.distantAiSkipEvery);
+        if (rule.maxPerChunk != null) row.maxPerChunk[id] = Math.max(0, rule.maxPerChunk);
+    }
+
+    private static boolean matches(List<String> types, String name) {
+        if (types == null || types.isEmpty()) return true;
+        for (String pattern : types) {
+            if (pattern == null) continue;
+            String p = pattern.toLowerCase(Locale.ROOT);
+            if (p.endsWith("*") ? name.startsWith(p.substring(0, p.length() - 1)) : name.equals(p)) return true;
+        }
+        return false;
+    }
+
+    private static final class Layer {
+        double[] weight = new double[0];
+        boolean[] protect = new boolean[0];
+        int[] aiSkipEvery = new int[0];
+        int[] maxPerChunk = new int[0];
+        int[] capped = new int[0];
+        int cappedCount;
+        /** Ids below this have been compiled against the rules; the rest still hold defaults. */
+        int compiled;
+    }
+}
@@ -0,0 +1,46 @@
+package com.snipr.megaperformance.optimizers;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide interning of entity type names to small dense ids, so per-type data (weights, flags,
+ * counters) can live in flat arrays indexed by id. Names are lower-cased; ids are never reused.
+ */
+public final class EntityTypes {
+
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64];
+    private static int count;
+
+    private EntityTypes() { }
+
+    public static int idOf(String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        Integer id = IDS.get(key);
+        return id != null ? id : register(key);
+    }
+
+    /** Type name for {@code id}, or null for ids that were never handed out. */
+    public static String name(int id) {
+        String[] current = names;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /** Number of ids handed out so far; every valid id is below this. */
+    public static synchronized int count() {
+        return count;
+    }
+
+    private static synchronized int register(String key) {
+        Integer existing = IDS.get(key);
+        if (existing != null) return existing;
+        int id = count++;
+        if (id == names.length) names = Arrays.copyOf(names, id << 1);
+        names[id] = key;
+        IDS.put(key, id);
+        return id;
+    }
+}
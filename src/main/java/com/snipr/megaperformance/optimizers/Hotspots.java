@@ -0,0 +1,176 @@
+package com.snipr.megaperformance.optimizers;
+
+import com.snipr.megaperformance.scheduler.BudgetedTask;
+import com.snipr.megaperformance.util.TopKHeap;
+
+import java.util.Arrays;
+
+/**
+ * Immutable ranking of the most crowded chunks in one world, with the leading entity types in each.
+ * Built on the world thread by a {@link Ranker} from the {@link ChunkEntityIndex} census as the last,
+ * budgeted phase of a pass, and read from any thread afterwards.
+ */
+public final class Hotspots {
+
+    /** Chunks kept per capture; commands and snapshots ask for at most this many. */
+    public static final int CAPACITY = 32;
+    /** Types listed per chunk, most numerous first. */
+    public static final int TYPES_PER_CHUNK = 4;
+
+    public static final Hotspots EMPTY = new Hotspots(0L, 0, 0, new long[0], new int[0], new int[0][], new int[0][]);
+
+    private final long capturedAtMs;
+    private final int indexedEntities;
+    private final int chunkCount;
+    private final long[] chunks;
+    private final int[] totals;
+    private final int[][] types;
+    private final int[][] typeCounts;
+
+    private Hotspots(long capturedAtMs, int indexedEntities, int chunkCount, long[] chunks, int[] totals,
+                     int[][] types, int[][] typeCounts) {
+        this.capturedAtMs = capturedAtMs;
+        this.indexedEntities = indexedEntities;
+        this.chunkCount = chunkCount;
+        this.chunks = chunks;
+        this.totals = totals;
+        this.types = types;
+        this.typeCounts = typeCounts;
+    }
+
+    /**
+     * Resumable ranking of the live chunks of one index, run as a budgeted phase of the optimizer pass.
+     * The heap and scratch buffers are reused across passes; only the published snapshot is allocated.
+     * The index must not change between {@link #begin()} and {@link #finish}.
+     */
+    static final class Ranker {
+        /** Buckets offered between deadline checks. */
+        private static final int CHECK_MASK = 255;
+
+        private final TopKHeap heap = new TopKHeap();
+        private int[] seen = new int[TYPES_PER_CHUNK * 4];
+        private int cursor;
+
+        void begin() {
+            heap.reset(CAPACITY);
+            cursor = 0;
+        }
+
+        /** Offers live buckets by entity count until {@code deadlineNanos}; true once every bucket was seen. */
+        boolean scan(ChunkEntityIndex index, long deadlineNanos) {
+            int limit = index.bucketLimit();
+            while (cursor < limit) {
+                int bucket = cursor++;
+                if (index.isBucketLive(bucket)) heap.offer(bucket, index.bucketSize(bucket));
+                if ((cursor & CHECK_MASK) == 0 && BudgetedTask.expired(deadlineNanos)) return false;
+            }
+            return true;
+        }
+
+        /** Builds the snapshot from the kept chunks, walking the members of those chunks only. */
+        Hotspots finish(ChunkEntityIndex index, long nowMs) {
+            heap.sortDescending();
+            int n = heap.size();
+            long[] chunks = new long[n];
+            int[] totals = new int[n];
+            int[][] types = new int[n][];
+            int[][] typeCounts = new int[n][];
+            for (int i = 0; i < n; i++) {
+                int bucket = (int) heap.id(i);
+                chunks[i] = index.bucketChunk(bucket);
+                totals[i] = index.bucketSize(bucket);
+                seen = leadingTypes(index, bucket, seen, i, types, typeCounts);
+            }
+            return new Hotspots(nowMs, index.size(), index.chunkCount(), chunks, totals, types, typeCounts);
+        }
+    }
+
+    /** Collects the bucket's distinct types, then keeps the most numerous by census count. */
+    private static int[] leadingTypes(ChunkEntityIndex index, int bucket, int[] seen, int i,
+                                      int[][] types, int[][] typeCounts) {
+        int distinct = 0;
+        int size = index.bucketSize(bucket);
+        for (int m = 0; m < size; m++) {
+            int type = index.type(index.bucketMember(bucket, m));
+            if (type < 0 || contains(seen, distinct, type)) continue;
+            if (distinct == seen.length) seen = Arrays.copyOf(seen, distinct << 1);
+            seen[distinct++] = type;
+        }
+        int keep = Math.min(TYPES_PER_CHUNK, distinct);
+        int[] ids = new int[keep];
+        int[] counts = new int[keep];
+        int kept = 0;
+        for (int d = 0; d < distinct; d++) {
+            int type = seen[d];
+            int count = index.typeCount(bucket, type);
+            int pos;
+            if (kept < keep) {
+                pos = kept++;
+            } else if (count > counts[keep - 1]) {
+                pos = keep - 1;
+            } else {
+                continue;
+            }
+            while (pos > 0 && counts[pos - 1] < count) {
+                ids[pos] = ids[pos - 1];
+                counts[pos] = counts[pos - 1];
+                pos--;
+            }
+            ids[pos] = type;
+            counts[pos] = count;
+        }
+        types[i] = ids;
+        typeCounts[i] = counts;
+        return seen;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    public long capturedAtMs() {
+        return capturedAtMs;
+    }
+
+    public int indexedEntities() {
+        return indexedEntities;
+    }
+
+    /** Chunks holding at least one indexed entity when captured. */
+    public int chunkCount() {
+        return chunkCount;
+    }
+
+    /** Number of ranked chunks, at most {@link #CAPACITY}. */
+    public int size() {
+        return chunks.length;
+    }
+
+    public int chunkX(int rank) {
+        return ChunkEntityIndex.chunkX(chunks[rank]);
+    }
+
+    public int chunkZ(int rank) {
+        return ChunkEntityIndex.chunkZ(chunks[rank]);
+    }
+
+    public int total(int rank) {
+        return totals[rank];
+    }
+
+    public int typeCount(int rank) {
+        return types[rank].length;
+    }
+
+    public String typeName(int rank, int i) {
+        String name = EntityTypes.name(types[rank][i]);
+        return name != null ? name : "?";
+    }
+
+    public int typeTotal(int rank, int i) {
+        return typeCounts[rank][i];
+    }
+}
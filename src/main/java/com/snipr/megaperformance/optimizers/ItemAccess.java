@@ -0,0 +1,209 @@
+package com.snipr.megaperformance.optimizers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reflective access to dropped-item entities and their stacks, cached per class like
+ * {@link EntityAccess}. An entity counts as a dropped item only when its class (or a superclass) or its
+ * type id is one of the server's dropped-item names; a stack getter alone is not enough, since item
+ * frames, displays and mobs holding items expose one too. Quantities are written either through a
+ * mutable setter on the stack or, for immutable stacks, by deriving a new stack ({@code withQuantity})
+ * and handing it back to the entity.
+ */
+final class ItemAccess {
+
+    /** Stack ceiling used when a stack does not report its own. */
+    static final int DEFAULT_MAX_STACK = 64;
+
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType INT_GETTER = MethodType.methodType(int.class, Object.class);
+    private static final MethodType INT_SETTER = MethodType.methodType(void.class, Object.class, int.class);
+    private static final MethodType INT_DERIVER = MethodType.methodType(Object.class, Object.class, int.class);
+    private static final MethodType OBJECT_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType PREDICATE = MethodType.methodType(boolean.class, Object.class, Object.class);
+    private static final String[] STACK_GETTERS = {"getItemStack", "getStack"};
+    private static final String[] STACK_SETTERS = {"setItemStack", "setStack"};
+    private static final String[] ID_GETTERS = {"getItemId", "getId", "getTypeId"};
+    private static final String[] QUANTITY_GETTERS = {"getQuantity", "getCount", "getAmount"};
+    private static final String[] QUANTITY_SETTERS = {"setQuantity", "setCount", "setAmount"};
+    private static final String[] QUANTITY_DERIVERS = {"withQuantity", "withCount", "withAmount"};
+    private static final String[] MAX_GETTERS = {"getMaxStack", "getMaxStackSize", "getMaxQuantity"};
+    private static final String[] STACKABLE_CHECKS = {"isStackableWith", "isEquivalentType", "isSimilar"};
+    /** Lower-cased class simple names and type ids of dropped-item entities. */
+    private static final Set<String> DROPPED_ITEM_TYPES = new HashSet<>(Arrays.asList(
+        "itementity", "droppeditem", "droppeditementity", "itemdrop", "item", "item_entity", "dropped_item"));
+
+    private static final ClassValue<EntityHandles> ENTITIES = new ClassValue<EntityHandles>() {
+        @Override
+        protected EntityHandles computeValue(Class<?> type) {
+            return new EntityHandles(type);
+        }
+    };
+
+    private static final ClassValue<StackHandles> STACKS = new ClassValue<StackHandles>() {
+        @Override
+        protected StackHandles computeValue(Class<?> type) {
+            return new StackHandles(type);
+        }
+    };
+
+    private ItemAccess() { }
+
+    /** Whether {@code entity} is a dropped item; {@code typeName} is its interned, lower-cased type id. */
+    static boolean isDroppedItem(Object entity, String typeName) {
+        EntityHandles handles = ENTITIES.get(entity.getClass());
+        return handles.stack != null && (handles.droppedItemClass || (typeName != null && DROPPED_ITEM_TYPES.contains(typeName)));
+    }
+
+    /** The entity's item stack, or null when it is not an item entity (or its stack is unreadable). */
+    static Object stack(Object entity) {
+        MethodHandle getter = ENTITIES.get(entity.getClass()).stack;
+        if (getter == null) return null;
+        try {
+            Object stack = (Object) getter.invokeExact(entity);
+            return stack != null && STACKS.get(stack.getClass()).quantity != null ? stack : null;
+        } catch (Throwable ignored) { }
+        return null;
+    }
+
+    /** Item id of {@code stack}, or null when it exposes none; stacks without an id are never merged. */
+    static String itemId(Object stack) {
+        MethodHandle getter = STACKS.get(stack.getClass()).id;
+        if (getter == null) return null;
+        try {
+            Object id = (Object) getter.invokeExact(stack);
+            return id != null ? id.toString() : null;
+        } catch (Throwable ignored) { }
+        return null;
+    }
+
+    /** Quantity of {@code stack}, or -1 when it cannot be read. */
+    static int quantity(Object stack) {
+        try {
+            return (int) STACKS.get(stack.getClass()).quantity.invokeExact(stack);
+        } catch (Throwable ignored) { }
+        return -1;
+    }
+
+    static int maxStack(Object stack) {
+        MethodHandle getter = STACKS.get(stack.getClass()).max;
+        if (getter != null) {
+            try {
+                int max = (int) getter.invokeExact(stack);
+                if (max > 0) return max;
+            } catch (Throwable ignored) { }
+        }
+        return DEFAULT_MAX_STACK;
+    }
+
+    /**
+     * Whether the two stacks may share one entity, per the stack's own check. Stacks without one are never
+     * merged: their durability or metadata could not be compared and would be lost.
+     */
+    static boolean stackable(Object a, Object b) {
+        if (a.getClass() != b.getClass()) return false;
+        MethodHandle check = STACKS.get(a.getClass()).stackable;
+        if (check == null) return false;
+        try {
+            return (boolean) check.invokeExact(a, b);
+        } catch (Throwable ignored) { }
+        return false;
+    }
+
+    /**
+     * Sets the quantity of the item entity's stack; returns the stack now held by the entity, or null
+     * when no write path exists or the write failed.
+     */
+    static Object setQuantity(Object entity, Object stack, int quantity) {
+        StackHandles handles = STACKS.get(stack.getClass());
+        try {
+            if (handles.setter != null) {
+                handles.setter.invokeExact(stack, quantity);
+                return stack;
+            }
+            MethodHandle entitySetter = ENTITIES.get(entity.getClass()).stackSetter;
+            if (handles.deriver != null && entitySetter != null) {
+                Object updated = (Object) handles.deriver.invokeExact(stack, quantity);
+                if (updated == null) return null;
+                entitySetter.invokeExact(entity, updated);
+                return updated;
+            }
+        } catch (Throwable ignored) { }
+        return null;
+    }
+
+    private static MethodHandle firstMethod(Class<?> owner, String[] names, MethodType type, Class<?>... params) {
+        for (String name : names) {
+            try {
+                Method m = owner.getMethod(name, params);
+                return MethodHandles.publicLookup().unreflect(m).asType(type);
+            } catch (Exception ignored) { }
+        }
+        return null;
+    }
+
+    private static MethodHandle stackSetter(Class<?> owner) {
+        for (String name : STACK_SETTERS) {
+            for (Method m : owner.getMethods()) {
+                if (!m.getName().equals(name) || m.getParameterCount() != 1 || m.getParameterTypes()[0].isPrimitive()) continue;
+                try {
+                    return MethodHandles.publicLookup().unreflect(m).asType(OBJECT_SETTER);
+                } catch (Exception ignored) { }
+            }
+        }
+        return null;
+    }
+
+    private static MethodHandle selfPredicate(Class<?> owner) {
+        for (String name : STACKABLE_CHECKS) {
+            try {
+                return MethodHandles.publicLookup().unreflect(owner.getMethod(name, owner)).asType(PREDICATE);
+            } catch (Exception ignored) { }
+        }
+        return null;
+    }
+
+    private static boolean isDroppedItemClass(Class<?> type) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            if (DROPPED_ITEM_TYPES.contains(c.getSimpleName().toLowerCase(Locale.ROOT))) return true;
+        }
+        return false;
+    }
+
+    private static final class EntityHandles {
+        final MethodHandle stack;
+        final MethodHandle stackSetter;
+        final boolean droppedItemClass;
+
+        EntityHandles(Class<?> type) {
+            this.stack = firstMethod(type, STACK_GETTERS, OBJECT_GETTER);
+            this.stackSetter = stack != null ? stackSetter(type) : null;
+            this.droppedItemClass = isDroppedItemClass(type);
+        }
+    }
+
+    private static final class StackHandles {
+        final MethodHandle id;
+        final MethodHandle quantity;
+        final MethodHandle setter;
+        final MethodHandle deriver;
+        final MethodHandle max;
+        final MethodHandle stackable;
+
+        StackHandles(Class<?> type) {
+            this.id = firstMethod(type, ID_GETTERS, OBJECT_GETTER);
+            this.quantity = firstMethod(type, QUANTITY_GETTERS, INT_GETTER);
+            this.setter = firstMethod(type, QUANTITY_SETTERS, INT_SETTER, int.class);
+            this.deriver = setter == null ? firstMethod(type, QUANTITY_DERIVERS, INT_DERIVER, int.class) : null;
+            this.max = firstMethod(type, MAX_GETTERS, INT_GETTER);
+            this.stackable = selfPredicate(type);
+        }
+    }
+}
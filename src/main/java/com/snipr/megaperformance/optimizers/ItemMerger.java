@@ -0,0 +1,122 @@
+package com.snipr.megaperformance.optimizers;
+
+import com.snipr.megaperformance.util.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Folds dropped items of the same kind lying within a radius of each other into one stack. Items are
+ * offered one at a time; each is checked against the earlier items kept in a uniform spatial hash grid
+ * (cell size = radius, so only the 3x3 cells around it can hold a partner). A match receives the summed
+ * quantity first, and the offered item is removed only after that write succeeds; if the removal then
+ * fails, the partner's quantity is put back, so items are never lost or duplicated. Stacks are never
+ * grown beyond their own maximum, both entities must still be live at merge time, and stacks are only
+ * merged when their own stackability check says so.
+ */
+final class ItemMerger {
+
+    private final LongIntHashMap cellHead = new LongIntHashMap();
+    private final Map<String, Integer> kinds = new HashMap<>();
+
+    private int[] slots = new int[64];
+    private int[] kind = new int[64];
+    private float[] xs = new float[64];
+    private float[] zs = new float[64];
+    private int[] next = new int[64];
+    private int count;
+
+    private double cellSize = 1.5;
+    private double radiusSq = 1.5 * 1.5;
+
+    /** Starts a fresh round; items offered in earlier rounds are forgotten. */
+    void begin(double radius) {
+        cellSize = Math.max(0.25, radius);
+        radiusSq = cellSize * cellSize;
+        if (count > 0) cellHead.clear();
+        count = 0;
+        if (kinds.size() > 4096) kinds.clear();
+    }
+
+    /**
+     * Offers the item in {@code slot}. Returns true when it was folded into an earlier item and removed
+     * from the world, in which case the caller drops the slot from the index.
+     */
+    boolean offer(ChunkEntityIndex index, int slot, Object store, Collection<?> entities) {
+        Object e = index.entity(slot);
+        if (!ItemAccess.isDroppedItem(e, EntityTypes.name(index.type(slot)))) return false;
+        Object stack = ItemAccess.stack(e);
+        if (stack == null) return false;
+        String id = ItemAccess.itemId(stack);
+        if (id == null) return false;
+        Integer known = kinds.get(id);
+        int k = known != null ? known : register(id);
+        float x = index.x(slot);
+        float z = index.z(slot);
+
+        int cx = (int) Math.floor(x / cellSize);
+        int cz = (int) Math.floor(z / cellSize);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                int p = cellHead.get(ChunkEntityIndex.packChunk(cx + dx, cz + dz));
+                while (p != LongIntHashMap.MISSING) {
+                    if (kind[p] == k) {
+                        double ddx = xs[p] - x;
+                        double ddz = zs[p] - z;
+                        if (ddx * ddx + ddz * ddz <= radiusSq && fold(index, slots[p], e, stack, store, entities)) return true;
+                    }
+                    p = next[p];
+                }
+            }
+        }
+        add(slot, k, x, z, cx, cz);
+        return false;
+    }
+
+    private boolean fold(ChunkEntityIndex index, int targetSlot, Object source, Object sourceStack,
+                         Object store, Collection<?> entities) {
+        Object target = index.entity(targetSlot);
+        if (target == null || !EntityAccess.isLive(entities, target) || !EntityAccess.isLive(entities, source)) return false;
+        // Re-read both stacks: either item may have been partly picked up since it was offered.
+        Object targetStack = ItemAccess.stack(target);
+        if (targetStack == null || !ItemAccess.stackable(targetStack, sourceStack)) return false;
+        int had = ItemAccess.quantity(targetStack);
+        int adding = ItemAccess.quantity(sourceStack);
+        if (had <= 0 || adding <= 0 || (long) had + adding > ItemAccess.maxStack(targetStack)) return false;
+
+        Object merged = ItemAccess.setQuantity(target, targetStack, had + adding);
+        if (merged == null) return false;
+        if (!EntityAccess.remove(store, entities, source)) {
+            ItemAccess.setQuantity(target, merged, had);
+            return false;
+        }
+        return true;
+    }
+
+    private int register(String id) {
+        int k = kinds.size();
+        kinds.put(id, k);
+        return k;
+    }
+
+    private void add(int slot, int k, float x, float z, int cx, int cz) {
+        if (count == slots.length) {
+            int cap = count << 1;
+            slots = Arrays.copyOf(slots, cap);
+            kind = Arrays.copyOf(kind, cap);
+            xs = Arrays.copyOf(xs, cap);
+            zs = Arrays.copyOf(zs, cap);
+            next = Arrays.copyOf(next, cap);
+        }
+        int i = count++;
+        slots[i] = slot;
+        kind[i] = k;
+        xs[i] = x;
+        zs[i] = z;
+        long cell = ChunkEntityIndex.packChunk(cx, cz);
+        next[i] = cellHead.get(cell);
+        cellHead.put(cell, i);
+    }
+}
@@ -3,31 +3,70 @@ package com.snipr.megaperformance.optimizers;
 import com.hypixel.hytale.logger.HytaleLogger;
 import com.snipr.megaperformance.config.MegaPerformanceConfig;
 
+import java.util.function.DoubleSupplier;
+
 /**
- * Best effort particle density scaler. Without a stable public API, this records the chosen scalar
- * and sets JVM properties that can be read by other systems/patches if present. It is intentionally
- * conservative and side-effect free if unsupported/breaks.
+ * Particle density policy: the configured scalar, per-player view distance and per-player per-tick cap.
+ * Under tick pressure the effective scalar is lowered by up to half of the configured value. Pressure
+ * is sampled by {@link #refreshPressure()} once per tick, so the per-packet read is a single volatile
+ * field. The policy is enforced on outbound particle packets by
+ * {@link com.snipr.megaperformance.network.ParticleCuller}.
  */
 public class ParticleOptimizer {
 
-    private double currentScalar = 1.0;
-    private boolean applyProjectiles = true;
+    public static final double PRESSURE_SCALAR_SHRINK = 0.5;
+    /** How often {@link #refreshPressure()} should run: once per 30 TPS tick. */
+    public static final long PRESSURE_REFRESH_MS = 1000 / 30;
+
+    private volatile double currentScalar = 1.0;
+    private volatile boolean applyProjectiles = true;
+    private volatile int viewDistance;
+    private volatile int maxPerPlayerTick;
+    private volatile DoubleSupplier loadPressure = () -> 0;
+    private volatile double effectiveScalar = 1.0;
 
     public void applyScalar(MegaPerformanceConfig.Particles cfg, HytaleLogger logger) {
         currentScalar = Math.max(0.1, Math.min(1.0, cfg.densityScalar));
         applyProjectiles = cfg.applyToProjectiles;
+        viewDistance = Math.max(0, cfg.viewDistance);
+        maxPerPlayerTick = Math.max(0, cfg.maxPerPlayerTick);
+        refreshPressure();
+
+        logger.atInfo().log("[MegaPerf] Particle density scalar set to %.2f (projectiles=%s, viewDistance=%d, perTickCap=%d)",
+            currentScalar, applyProjectiles, viewDistance, maxPerPlayerTick);
+    }
 
-        System.setProperty("megaperf.particle.scalar", Double.toString(currentScalar));
-        System.setProperty("megaperf.particle.applyProjectiles", Boolean.toString(applyProjectiles));
+    public void setLoadPressure(DoubleSupplier loadPressure) {
+        this.loadPressure = loadPressure;
+        refreshPressure();
+    }
 
-        logger.atInfo().log("[MegaPerf] Particle density scalar set to %.2f (projectiles=%s)", currentScalar, applyProjectiles);
+    /** Samples the load pressure once and recomputes the effective scalar from it. */
+    public void refreshPressure() {
+        double pressure = Math.max(0, Math.min(1, loadPressure.getAsDouble()));
+        effectiveScalar = Math.max(0.1, currentScalar * (1 - PRESSURE_SCALAR_SHRINK * pressure));
     }
 
     public double getCurrentScalar() {
         return currentScalar;
     }
 
+    /** Configured scalar scaled down by the load pressure as of the last {@link #refreshPressure()}. */
+    public double getEffectiveScalar() {
+        return effectiveScalar;
+    }
+
     public boolean isApplyProjectiles() {
         return applyProjectiles;
     }
+
+    /** Blocks beyond which particles are not sent to a player; 0 disables the distance cull. */
+    public int getViewDistance() {
+        return viewDistance;
+    }
+
+    /** Particle packets sent to one player per tick; 0 means unlimited. */
+    public int getMaxPerPlayerTick() {
+        return maxPerPlayerTick;
+    }
 }
@@ -0,0 +1,37 @@
+package com.snipr.megaperformance.optimizers;
+
+import com.snipr.megaperformance.config.MegaPerformanceConfig;
+
+/**
+ * Scores trim candidates: higher means a better victim. Older entities and entities farther from the
+ * nearest player score higher, and the sum is divided by the entity type's weight, so valuable types
+ * (weight above 1) are kept longer and throwaway ones (below 1) go first. Weights and protection come
+ * from {@link EntityPolicies}, so they can differ per world, type and region.
+ */
+final class TrimPolicy {
+
+    /** Age in passes at which an entity counts as fully "old". */
+    static final int AGE_SATURATION_PASSES = 300;
+
+    private static final double AGE_WEIGHT = 0.4;
+    private static final double DISTANCE_WEIGHT = 0.6;
+
+    private double midRadius = 96;
+
+    void configure(MegaPerformanceConfig.Entities cfg) {
+        midRadius = Math.max(1, cfg.midRadius);
+    }
+
+    /**
+     * @param agePasses passes since the entity was first indexed
+     * @param nearestPlayerSq squared distance to the nearest player, +Infinity when none is within the mid radius
+     * @param weight the type's trim weight, above 0
+     */
+    double score(int agePasses, double nearestPlayerSq, double weight) {
+        double age = Math.min(1.0, agePasses / (double) AGE_SATURATION_PASSES);
+        double distance = nearestPlayerSq == Double.POSITIVE_INFINITY
+            ? 1.0
+            : Math.min(1.0, Math.sqrt(nearestPlayerSq) / midRadius);
+        return (AGE_WEIGHT * age + DISTANCE_WEIGHT * distance) / weight;
+    }
+}
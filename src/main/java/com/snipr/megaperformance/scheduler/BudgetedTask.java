@@ -0,0 +1,22 @@
+package com.snipr.megaperformance.scheduler;
+
+import com.hypixel.hytale.server.core.universe.world.World;
+
+/**
+ * Unit of cooperative optimizer work. Implementations keep their own cursor, do as much as fits before
+ * {@code deadlineNanos} (a {@link System#nanoTime()} value), and pick up where they left off on the
+ * next slice.
+ */
+public interface BudgetedTask {
+
+    void runSlice(World world, long deadlineNanos);
+
+    /** Whether work is left over from an earlier slice; lets the pacer grant catch-up budget. */
+    default boolean hasBacklog() {
+        return false;
+    }
+
+    static boolean expired(long deadlineNanos) {
+        return System.nanoTime() - deadlineNanos >= 0;
+    }
+}
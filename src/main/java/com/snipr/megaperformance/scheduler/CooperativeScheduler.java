@@ -0,0 +1,108 @@
+package com.snipr.megaperformance.scheduler;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.HytaleServer;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.snipr.megaperformance.config.MegaPerformanceConfig;
+import com.snipr.megaperformance.metrics.PerfStats;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Runs {@link BudgetedTask}s on the world thread in short slices, each capped by a per-tick budget.
+ * At most one slice is queued on the world at a time, so a slow world never accumulates a backlog of
+ * optimizer work. Tasks are rotated so a single heavy task cannot starve the others. The budget comes
+ * from the world's {@link TickPacer}, which is fed the queue-to-run delay of every slice and whether any
+ * task still has work left after it.
+ */
+public class CooperativeScheduler {
+
+    public static final long SLICE_PERIOD_MS = 50;
+
+    private final Supplier<World> worldSupplier;
+    private final HytaleLogger logger;
+    private final List<BudgetedTask> tasks = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean sliceQueued = new AtomicBoolean();
+    private final TickPacer pacer = new TickPacer();
+    private int rotation;
+    private ScheduledFuture<?> future;
+
+    public CooperativeScheduler(Supplier<World> worldSupplier, HytaleLogger logger) {
+        this.worldSupplier = worldSupplier;
+        this.logger = logger;
+    }
+
+    public void register(BudgetedTask task) {
+        tasks.add(task);
+    }
+
+    public void configure(int budgetMicros, MegaPerformanceConfig.Tick tick) {
+        pacer.configure(budgetMicros, tick);
+    }
+
+    public TickPacer pacer() {
+        return pacer;
+    }
+
+    public synchronized void start() {
+        if (future != null) return;
+        future = HytaleServer.SCHEDULED_EXECUTOR.scheduleWithFixedDelay(
+            this::queueSlice, SLICE_PERIOD_MS, SLICE_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
+    private void queueSlice() {
+        try {
+            World world = worldSupplier.get();
+            if (world == null || tasks.isEmpty()) return;
+            if (!sliceQueued.compareAndSet(false, true)) return;
+            long queuedAt = System.nanoTime();
+            try {
+                world.execute(() -> runSlice(world, queuedAt));
+            } catch (Exception e) {
+                sliceQueued.set(false);
+                throw e;
+            }
+        } catch (Exception e) {
+            logger.atFine().withCause(e).log("[MegaPerf] Could not queue optimizer slice");
+        }
+    }
+
+    private void runSlice(World world, long queuedAt) {
+        try {
+            long now = System.nanoTime();
+            PerfStats.SLICE_QUEUE_DELAY.record(now - queuedAt);
+            pacer.onSample(now - queuedAt);
+            long deadline = now + pacer.budgetNanos();
+            int count = tasks.size();
+            int start = rotation++;
+            for (int i = 0; i < count; i++) {
+                BudgetedTask task = tasks.get(Math.floorMod(start + i, count));
+                try {
+                    task.runSlice(world, deadline);
+                } catch (Exception e) {
+                    logger.atWarning().withCause(e).log("[MegaPerf] Optimizer task failed");
+                }
+                if (BudgetedTask.expired(deadline)) break;
+            }
+            boolean backlog = false;
+            for (int i = 0; i < count && !backlog; i++) {
+                backlog = tasks.get(i).hasBacklog();
+            }
+            pacer.setBacklog(backlog);
+        } finally {
+            sliceQueued.set(false);
+        }
+    }
+}
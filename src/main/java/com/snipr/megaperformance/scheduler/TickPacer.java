@@ -0,0 +1,88 @@
+package com.snipr.megaperformance.scheduler;
+
+import com.snipr.megaperformance.config.MegaPerformanceConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feedback controller for one world. It smooths the world's lag with an EWMA and turns it into a 0..1
+ * pressure value that optimizers use to scale their aggressiveness, and into the per-slice time budget
+ * for optimizer work. The lag is scheduling delay: how long a slice queued on the world waits before the
+ * world thread runs it. That is a proxy for tick overrun, not a measured tick duration (MSPT), which the
+ * server does not expose to plugins.
+ * <p>
+ * {@code jitterClampMs} is both a deadband (lag below it counts as none) and a spike clamp (a single
+ * sample can pull the estimate at most that far above its current value). Without pressure the slice
+ * budget is the configured base; only while a task reports a backlog does it grow, up to
+ * {@code maxCatchupMillis}, so the optimizers catch up on deferred work. 0 disables catch-up bursts.
+ */
+public final class TickPacer {
+
+    /** Nominal server tick length (30 TPS); lag of one full tick means full pressure. */
+    public static final double TICK_MS = 1000.0 / 30;
+
+    private static final double ALPHA = 0.2;
+    private static final double MIN_BUDGET_SCALE = 0.25;
+    private static final int MAX_CATCHUP_SCALE = 4;
+
+    private double ewmaMs;
+    private long baseBudgetNanos = TimeUnit.MICROSECONDS.toNanos(2000);
+    private long catchupBudgetNanos = baseBudgetNanos;
+    private double jitterClampMs = 10;
+    private boolean backlog;
+
+    private volatile double pressure;
+    private volatile double smoothedLagMs;
+    private volatile long budgetNanos = baseBudgetNanos;
+
+    public synchronized void configure(int budgetMicros, MegaPerformanceConfig.Tick tick) {
+        baseBudgetNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(100, budgetMicros));
+        long catchupCap = TimeUnit.MILLISECONDS.toNanos(Math.max(0, tick.maxCatchupMillis));
+        catchupBudgetNanos = Math.max(baseBudgetNanos, Math.min(baseBudgetNanos * MAX_CATCHUP_SCALE, catchupCap));
+        jitterClampMs = Math.max(0, tick.jitterClampMs);
+        publish();
+    }
+
+    /** Feeds one lag sample; called on the world thread for every optimizer slice. */
+    public synchronized void onSample(long lagNanos) {
+        double ms = lagNanos / 1_000_000.0;
+        if (ms < jitterClampMs) {
+            ms = 0;
+        } else if (jitterClampMs > 0) {
+            ms = Math.min(ms, ewmaMs + jitterClampMs);
+        }
+        ewmaMs += ALPHA * (ms - ewmaMs);
+        publish();
+    }
+
+    /** Records whether work is left over after the latest slice; catch-up budget is only granted then. */
+    public synchronized void setBacklog(boolean backlog) {
+        if (this.backlog == backlog) return;
+        this.backlog = backlog;
+        publish();
+    }
+
+    /** 0 when the world keeps up, 1 when it lags by a full tick or more. */
+    public double pressure() {
+        return pressure;
+    }
+
+    public double smoothedLagMs() {
+        return smoothedLagMs;
+    }
+
+    public long budgetNanos() {
+        return budgetNanos;
+    }
+
+    private void publish() {
+        double p = Math.max(0, Math.min(1, ewmaMs / TICK_MS));
+        pressure = p;
+        smoothedLagMs = ewmaMs;
+        if (p > 0) {
+            budgetNanos = (long) (baseBudgetNanos * (1 - (1 - MIN_BUDGET_SCALE) * p));
+        } else {
+            budgetNanos = backlog ? catchupBudgetNanos : baseBudgetNanos;
+        }
+    }
+}
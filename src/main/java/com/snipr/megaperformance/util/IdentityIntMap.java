@@ -0,0 +1,115 @@
+package com.snipr.megaperformance.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing identity map from object references to non-negative int values. Used to find an
+ * entity's index slot without boxing or relying on the entity's own equals/hashCode.
+ */
+public final class IdentityIntMap {
+
+    public static final int MISSING = -1;
+
+    private Object[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public IdentityIntMap() {
+        allocate(64);
+    }
+
+    public int get(Object key) {
+        int i = slot(key);
+        Object k;
+        while ((k = keys[i]) != null) {
+            if (k == key) return values[i];
+            i = (i + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    public int put(Object key, int value) {
+        if (key == null) throw new IllegalArgumentException("null key");
+        int i = slot(key);
+        Object k;
+        while ((k = keys[i]) != null) {
+            if (k == key) {
+                int prev = values[i];
+                values[i] = value;
+                return prev;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= resizeAt) rehash(keys.length << 1);
+        return MISSING;
+    }
+
+    public int remove(Object key) {
+        int i = slot(key);
+        Object k;
+        while ((k = keys[i]) != null) {
+            if (k == key) {
+                int prev = values[i];
+                shiftDown(i);
+                size--;
+                return prev;
+            }
+            i = (i + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    private void shiftDown(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (keys[i] == null) break;
+            int home = slot(keys[i]);
+            boolean movable = hole <= i ? (home <= hole || home > i) : (home <= hole && home > i);
+            if (movable) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        keys[hole] = null;
+    }
+
+    private int slot(Object key) {
+        int h = System.identityHashCode(key) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void rehash(int capacity) {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int j = slot(oldKeys[i]);
+            while (keys[j] != null) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (capacity * 3) >>> 2;
+    }
+}
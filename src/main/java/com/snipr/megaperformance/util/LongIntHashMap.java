@@ -0,0 +1,135 @@
+package com.snipr.megaperformance.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from primitive long keys to non-negative int values. Linear probing with
+ * backward-shift deletion, so there are no tombstones and no boxing on any path.
+ */
+public final class LongIntHashMap {
+
+    public static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public LongIntHashMap() {
+        this(64);
+    }
+
+    public LongIntHashMap(int expected) {
+        allocate(tableSizeFor(Math.max(4, expected)));
+    }
+
+    public int get(long key) {
+        int i = slot(key);
+        while (values[i] != MISSING) {
+            if (keys[i] == key) return values[i];
+            i = (i + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != MISSING;
+    }
+
+    /**
+     * Associates {@code value} (which must be >= 0) with {@code key}, returning the previous value or
+     * {@link #MISSING}.
+     */
+    public int put(long key, int value) {
+        if (value < 0) throw new IllegalArgumentException("value must be >= 0: " + value);
+        int i = slot(key);
+        while (values[i] != MISSING) {
+            if (keys[i] == key) {
+                int prev = values[i];
+                values[i] = value;
+                return prev;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= resizeAt) rehash(keys.length << 1);
+        return MISSING;
+    }
+
+    public int remove(long key) {
+        int i = slot(key);
+        while (values[i] != MISSING) {
+            if (keys[i] == key) {
+                int prev = values[i];
+                shiftDown(i);
+                size--;
+                return prev;
+            }
+            i = (i + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, MISSING);
+        size = 0;
+    }
+
+    private void shiftDown(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == MISSING) break;
+            int home = slot(keys[i]);
+            // Move the entry back only if its home slot does not lie cyclically in (hole, i].
+            boolean movable = hole <= i ? (home <= hole || home > i) : (home <= hole && home > i);
+            if (movable) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        values[hole] = MISSING;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == MISSING) continue;
+            int j = slot(oldKeys[i]);
+            while (values[j] != MISSING) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+        resizeAt = (capacity * 3) >>> 2;
+    }
+
+    private static int tableSizeFor(int expected) {
+        int n = Integer.highestOneBit((expected * 4 + 2) / 3);
+        return Math.max(8, n << 1);
+    }
+}
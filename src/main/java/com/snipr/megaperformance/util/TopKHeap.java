@@ -0,0 +1,89 @@
+package com.snipr.megaperformance.util;
+
+/**
+ * Bounded min-heap that keeps the {@code k} highest-scoring (id, score) pairs seen since the last
+ * {@link #reset(int)}. Offering n candidates costs O(n log k); arrays only grow when k exceeds every
+ * previous k, so steady-state selection does not allocate.
+ */
+public final class TopKHeap {
+
+    private long[] ids = new long[16];
+    private double[] scores = new double[16];
+    private int limit;
+    private int size;
+
+    public void reset(int k) {
+        if (k > ids.length) {
+            int cap = Math.max(k, ids.length << 1);
+            ids = new long[cap];
+            scores = new double[cap];
+        }
+        limit = Math.max(0, k);
+        size = 0;
+    }
+
+    /** Adds the candidate if the heap has room or it beats the lowest score currently kept. */
+    public void offer(long id, double score) {
+        if (size < limit) {
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] <= score) break;
+                ids[i] = ids[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            ids[i] = id;
+            scores[i] = score;
+        } else if (limit > 0 && score > scores[0]) {
+            siftDown(id, score, size);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Entry {@code i} in heap order (not sorted); use {@link #sortDescending()} first for ranked output. */
+    public long id(int i) {
+        return ids[i];
+    }
+
+    public double score(int i) {
+        return scores[i];
+    }
+
+    /** Lowest score kept, or -Infinity when empty. */
+    public double minScore() {
+        return size == 0 ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    /**
+     * Reorders the kept entries from highest to lowest score in place (heapsort). The heap is no longer a
+     * heap afterwards; call {@link #reset(int)} before offering again.
+     */
+    public void sortDescending() {
+        for (int end = size - 1; end > 0; end--) {
+            long id = ids[end];
+            double score = scores[end];
+            ids[end] = ids[0];
+            scores[end] = scores[0];
+            siftDown(id, score, end);
+        }
+    }
+
+    private void siftDown(long id, double score, int n) {
+        int i = 0;
+        while (true) {
+            int child = (i << 1) + 1;
+            if (child >= n) break;
+            if (child + 1 < n && scores[child + 1] < scores[child]) child++;
+            if (scores[child] >= score) break;
+            ids[i] = ids[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        ids[i] = id;
+        scores[i] = score;
+    }
+}
@@ -0,0 +1,112 @@
+package com.snipr.megaperformance.worlds;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.HytaleServer;
+import com.snipr.megaperformance.async.Lane;
+import com.snipr.megaperformance.async.LaneExecutor;
+import com.snipr.megaperformance.config.MegaPerformanceConfig;
+import com.snipr.megaperformance.optimizers.Hotspots;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Periodically appends every world's published {@link Hotspots} to {@code hotspots.jsonl}, one JSON
+ * object per line, for offline analysis. Snapshots are already immutable, so the write runs entirely on
+ * the executor's analytics lane and never touches a world thread. The file rolls over to
+ * {@code hotspots.jsonl.1} once it passes {@link #MAX_FILE_BYTES}.
+ */
+public class HotspotRecorder {
+
+    public static final String FILE_NAME = "hotspots.jsonl";
+
+    private static final long MAX_FILE_BYTES = 8L * 1024 * 1024;
+
+    private final WorldRegistry registry;
+    private final Supplier<LaneExecutor> executor;
+    private final File folder;
+    private final HytaleLogger logger;
+
+    private ScheduledFuture<?> task;
+
+    public HotspotRecorder(WorldRegistry registry, Supplier<LaneExecutor> executor, File folder, HytaleLogger logger) {
+        this.registry = registry;
+        this.executor = executor;
+        this.folder = folder;
+        this.logger = logger;
+    }
+
+    public synchronized void start(MegaPerformanceConfig.World cfg) {
+        stop();
+        int minutes = cfg.hotspotSnapshotMinutes;
+        if (minutes <= 0) return;
+        task = HytaleServer.SCHEDULED_EXECUTOR.scheduleWithFixedDelay(() -> {
+            LaneExecutor lanes = executor.get();
+            if (lanes != null) lanes.submit(Lane.ANALYTICS, this::record);
+        }, minutes, minutes, TimeUnit.MINUTES);
+    }
+
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    private void record() {
+        try {
+            JsonObject line = new JsonObject();
+            line.addProperty("time", System.currentTimeMillis());
+            JsonArray worlds = new JsonArray();
+            for (WorldSession session : registry.sessions()) {
+                worlds.add(toJson(session.getName(), session.hotspots()));
+            }
+            line.add("worlds", worlds);
+
+            File file = new File(folder, FILE_NAME);
+            if (file.length() > MAX_FILE_BYTES) {
+                File rolled = new File(folder, FILE_NAME + ".1");
+                if (rolled.exists()) rolled.delete();
+                file.renameTo(rolled);
+            }
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+                writer.write(line.toString());
+                writer.write('\n');
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.atWarning().withCause(e).log("[MegaPerf] Failed to write hotspot snapshot");
+        }
+    }
+
+    private static JsonObject toJson(String world, Hotspots hotspots) {
+        JsonObject out = new JsonObject();
+        out.addProperty("world", world);
+        out.addProperty("capturedAt", hotspots.capturedAtMs());
+        out.addProperty("entities", hotspots.indexedEntities());
+        out.addProperty("chunks", hotspots.chunkCount());
+        JsonArray ranked = new JsonArray();
+        for (int rank = 0; rank < hotspots.size(); rank++) {
+            JsonObject chunk = new JsonObject();
+            chunk.addProperty("x", hotspots.chunkX(rank));
+            chunk.addProperty("z", hotspots.chunkZ(rank));
+            chunk.addProperty("total", hotspots.total(rank));
+            JsonObject types = new JsonObject();
+            for (int i = 0; i < hotspots.typeCount(rank); i++) {
+                types.addProperty(hotspots.typeName(rank, i), hotspots.typeTotal(rank, i));
+            }
+            chunk.add("types", types);
+            ranked.add(chunk);
+        }
+        out.add("hotspots", ranked);
+        return out;
+    }
+}
@@ -0,0 +1,187 @@
+package com.snipr.megaperformance.worlds;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.HytaleServer;
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.snipr.megaperformance.async.Lane;
+import com.snipr.megaperformance.async.LaneExecutor;
+import com.snipr.megaperformance.config.MegaPerformanceConfig;
+import com.snipr.megaperformance.metrics.PerfStats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Autosave pacing. With {@code staggerSaves} each cycle is split into one slice per dirty world and the
+ * slices are spread evenly across the autosave interval, handed to the executor's save lane, and capped
+ * at {@code maxConcurrentSaves} in flight. A slice that finds no permit or a full lane is retried later,
+ * with at most one pending retry per world; the next cycle supersedes any retry still pending, so a world
+ * is never saved twice for the same cycle. The save itself runs on the world's thread (see
+ * {@link WorldSaveAccess#save}); the save lane only waits for it.
+ * Worlds that report no unsaved changes are skipped; worlds that cannot report it are always saved.
+ * Slices are whole worlds, since the server exposes no per-region save. Measuring the bytes a save wrote
+ * happens afterwards on the analytics lane, outside the save permit, and looks at a bounded number of files.
+ * Without stagger support (or worlds that expose no save hook) a cycle falls back to a single
+ * {@link Universe#runBackup()} burst.
+ */
+public class SavePipeline {
+
+    private static final long RETRY_DELAY_MS = 5000;
+
+    private final WorldRegistry registry;
+    private final Supplier<LaneExecutor> executor;
+    private final HytaleLogger logger;
+    private final List<ScheduledFuture<?>> pendingSlices = new ArrayList<>();
+    /** Pending retry per world for the current cycle; guarded by this. */
+    private final Map<WorldSession, ScheduledFuture<?>> retries = new HashMap<>();
+
+    private MegaPerformanceConfig.World cfg;
+    private Semaphore inFlight;
+    private ScheduledFuture<?> cycleTask;
+    /** Bumped by every cycle; slices and retries from an older cycle are dropped. */
+    private volatile long cycle;
+
+    public SavePipeline(WorldRegistry registry, Supplier<LaneExecutor> executor, HytaleLogger logger) {
+        this.registry = registry;
+        this.executor = executor;
+        this.logger = logger;
+    }
+
+    public synchronized void start(MegaPerformanceConfig.World cfg) {
+        stop();
+        this.cfg = cfg;
+        this.inFlight = new Semaphore(Math.max(1, cfg.maxConcurrentSaves));
+        int minutes = Math.max(1, cfg.autosaveMinutes);
+        cycleTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleWithFixedDelay(
+            this::runCycle, minutes, minutes, TimeUnit.MINUTES);
+    }
+
+    /** Cancels the cycle and any slices not yet started; saves already running finish on their own. */
+    public synchronized void stop() {
+        if (cycleTask != null) {
+            cycleTask.cancel(false);
+            cycleTask = null;
+        }
+        for (ScheduledFuture<?> slice : pendingSlices) {
+            slice.cancel(false);
+        }
+        pendingSlices.clear();
+        retries.clear();
+    }
+
+    private synchronized void runCycle() {
+        long current = ++cycle;
+        for (ScheduledFuture<?> retry : retries.values()) {
+            retry.cancel(false);
+        }
+        retries.clear();
+        try {
+            if (Universe.get() == null || registry.isEmpty()) {
+                logger.atInfo().log("[MegaPerf] Skipping backup; no worlds loaded yet");
+                return;
+            }
+            pendingSlices.removeIf(ScheduledFuture::isDone);
+
+            List<WorldSession> slices = new ArrayList<>();
+            boolean needsBackup = false;
+            for (WorldSession session : registry.sessions()) {
+                if (!session.isDirty()) continue;
+                if (cfg.staggerSaves && WorldSaveAccess.supportsSave(session.getWorld())) {
+                    slices.add(session);
+                } else {
+                    needsBackup = true;
+                }
+            }
+
+            if (needsBackup) runBackup();
+            if (slices.isEmpty()) return;
+
+            long intervalMs = TimeUnit.MINUTES.toMillis(Math.max(1, cfg.autosaveMinutes));
+            long spacingMs = intervalMs / (slices.size() + 1);
+            for (int i = 0; i < slices.size(); i++) {
+                WorldSession session = slices.get(i);
+                pendingSlices.add(HytaleServer.SCHEDULED_EXECUTOR.schedule(
+                    () -> submitSlice(session, current), spacingMs * i, TimeUnit.MILLISECONDS));
+            }
+        } catch (Exception e) {
+            logger.atWarning().withCause(e).log("Error triggering autosave/backup");
+        }
+    }
+
+    private void runBackup() {
+        Universe.get().runBackup().whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                logger.atWarning().withCause(throwable).log("Autosave/backup failed");
+                return;
+            }
+            PerfStats.SAVES.increment();
+        });
+    }
+
+    private void submitSlice(WorldSession session, long sliceCycle) {
+        if (sliceCycle != cycle) return;
+        Semaphore permits = inFlight;
+        if (!permits.tryAcquire()) {
+            retrySlice(session, sliceCycle);
+            return;
+        }
+        LaneExecutor lanes = executor.get();
+        boolean queued = lanes != null && lanes.submit(Lane.SAVE_IO, () -> {
+            try {
+                saveSlice(session);
+            } finally {
+                permits.release();
+            }
+        });
+        if (!queued) {
+            permits.release();
+            retrySlice(session, sliceCycle);
+        }
+    }
+
+    /** Schedules one retry for the world unless one is already pending or a newer cycle has started. */
+    private synchronized void retrySlice(WorldSession session, long sliceCycle) {
+        if (cycleTask == null || sliceCycle != cycle || retries.containsKey(session)) return;
+        ScheduledFuture<?> retry = HytaleServer.SCHEDULED_EXECUTOR.schedule(() -> {
+            retryStarted(session, sliceCycle);
+            submitSlice(session, sliceCycle);
+        }, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+        retries.put(session, retry);
+        pendingSlices.add(retry);
+    }
+
+    private synchronized void retryStarted(WorldSession session, long sliceCycle) {
+        if (sliceCycle == cycle) retries.remove(session);
+    }
+
+    private void saveSlice(WorldSession session) {
+        long startMs = System.currentTimeMillis();
+        try {
+            WorldSaveAccess.save(session.getWorld());
+            PerfStats.SAVES.increment();
+        } catch (Exception e) {
+            logger.atWarning().withCause(e).log("Autosave failed for world %s", session.getName());
+            return;
+        }
+        long tookMs = Math.max(1, System.currentTimeMillis() - startMs);
+        LaneExecutor lanes = executor.get();
+        boolean measured = lanes != null && lanes.submit(Lane.ANALYTICS, () -> logSave(session, startMs, tookMs));
+        if (!measured) logger.atInfo().log("[MegaPerf] Saved world %s in %d ms", session.getName(), tookMs);
+    }
+
+    private void logSave(WorldSession session, long startMs, long tookMs) {
+        long bytes = WorldSaveAccess.bytesWrittenSince(WorldSaveAccess.saveDirectory(session.getWorld()), startMs);
+        if (bytes < 0) {
+            logger.atInfo().log("[MegaPerf] Saved world %s in %d ms (too many files to measure)", session.getName(), tookMs);
+            return;
+        }
+        logger.atInfo().log("[MegaPerf] Saved world %s in %d ms (%d KiB, %d KiB/s)",
+            session.getName(), tookMs, bytes / 1024, bytes * 1000 / tookMs / 1024);
+    }
+}
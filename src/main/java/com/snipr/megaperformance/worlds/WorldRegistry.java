@@ -0,0 +1,139 @@
+package com.snipr.megaperformance.worlds;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.HytaleServer;
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.snipr.megaperformance.config.MegaPerformanceConfig;
+import com.snipr.megaperformance.metrics.FlightRecorder;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discovers loaded worlds and keeps one {@link WorldSession} per world, starting sessions as worlds
+ * load and stopping them as worlds unload. Discovery polls {@link Universe#getWorlds()} on the shared
+ * scheduler; the per-world optimizer work itself never runs here.
+ */
+public class WorldRegistry implements FlightRecorder.Source {
+
+    public static final long DISCOVERY_PERIOD_SECONDS = 5;
+
+    private final HytaleLogger logger;
+    private final Map<String, WorldSession> sessions = new ConcurrentHashMap<>();
+    private MegaPerformanceConfig config;
+    private ScheduledFuture<?> discoveryTask;
+
+    public WorldRegistry(HytaleLogger logger) {
+        this.logger = logger;
+    }
+
+    public synchronized void start(MegaPerformanceConfig config) {
+        this.config = config;
+        if (discoveryTask != null) return;
+        discoveryTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleWithFixedDelay(
+            this::discover, 0, DISCOVERY_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /** Pushes a new config to every tracked world without restarting their optimizers. */
+    public synchronized void applyConfig(MegaPerformanceConfig config) {
+        this.config = config;
+        for (WorldSession session : sessions.values()) {
+            session.applyConfig(config);
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (discoveryTask != null) {
+            discoveryTask.cancel(false);
+            discoveryTask = null;
+        }
+        for (WorldSession session : sessions.values()) {
+            session.stop();
+            session.restoreActivation();
+        }
+        sessions.clear();
+    }
+
+    public Collection<WorldSession> sessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    /** Highest load pressure across tracked worlds. */
+    @Override
+    public double peakPressure() {
+        double peak = 0;
+        for (WorldSession session : sessions.values()) {
+            peak = Math.max(peak, session.pressure());
+        }
+        return peak;
+    }
+
+    /** Worst smoothed scheduling lag across tracked worlds, in milliseconds. */
+    @Override
+    public double worstLagMs() {
+        double worst = 0;
+        for (WorldSession session : sessions.values()) {
+            worst = Math.max(worst, session.smoothedLagMs());
+        }
+        return worst;
+    }
+
+    /** Entities indexed by the optimizers of all tracked worlds, as of their last hotspot ranking. */
+    @Override
+    public long indexedEntities() {
+        long total = 0;
+        for (WorldSession session : sessions.values()) {
+            total += session.hotspots().indexedEntities();
+        }
+        return total;
+    }
+
+    @Override
+    public int worldCount() {
+        return sessions.size();
+    }
+
+    public boolean isEmpty() {
+        return sessions.isEmpty();
+    }
+
+    private synchronized void discover() {
+        try {
+            Universe universe = Universe.get();
+            if (universe == null || config == null) return;
+            Map<String, World> loaded = universe.getWorlds();
+            if (loaded == null) return;
+
+            for (Map.Entry<String, World> entry : loaded.entrySet()) {
+                World world = entry.getValue();
+                if (world == null) continue;
+                WorldSession existing = sessions.get(entry.getKey());
+                if (existing != null && existing.getWorld() == world) continue;
+                if (existing != null) existing.stop();
+
+                WorldSession session = new WorldSession(entry.getKey(), world, config, logger);
+                sessions.put(entry.getKey(), session);
+                session.start();
+                logger.atInfo().log("[MegaPerf] Tracking world %s", entry.getKey());
+            }
+
+            Iterator<WorldSession> it = sessions.values().iterator();
+            while (it.hasNext()) {
+                WorldSession session = it.next();
+                if (loaded.get(session.getName()) != session.getWorld()) {
+                    session.stop();
+                    it.remove();
+                    logger.atInfo().log("[MegaPerf] Stopped tracking unloaded world %s", session.getName());
+                }
+            }
+        } catch (Exception e) {
+            logger.atWarning().withCause(e).log("[MegaPerf] World discovery failed");
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.snipr.megaperformance.worlds;
+
+import com.hypixel.hytale.server.core.universe.world.World;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reflective access to per-world save hooks, resolved once per world class. Worlds whose class exposes
+ * no save method report {@link #supportsSave} as false so callers can fall back to a universe backup.
+ * The server offers no per-region save entry point, so a save always covers the whole world. Nothing
+ * says the save methods are safe to call while the world ticks, so they are always invoked on the world's
+ * own thread; callers only wait for the outcome.
+ */
+final class WorldSaveAccess {
+
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType FLAG_GETTER = MethodType.methodType(boolean.class, Object.class);
+    private static final String[] SAVE_METHODS = {"saveAsync", "saveAll", "save"};
+    private static final String[] PATH_METHODS = {"getSavePath", "getPath"};
+    private static final String[] DIRTY_METHODS = {"hasUnsavedChanges", "isDirty", "needsSave", "isModified"};
+    /** Files looked at when measuring a save; keeps the walk cheap on large worlds. */
+    static final int MAX_SCANNED_FILES = 4096;
+    private static final long SAVE_TIMEOUT_SECONDS = 120;
+
+    private static final ClassValue<Handles> HANDLES = new ClassValue<Handles>() {
+        @Override
+        protected Handles computeValue(Class<?> type) {
+            return new Handles(type);
+        }
+    };
+
+    private WorldSaveAccess() { }
+
+    static boolean supportsSave(Object world) {
+        return HANDLES.get(world.getClass()).save != null;
+    }
+
+    /** The world's own unsaved-changes flag, or null when its class does not expose one (or it fails). */
+    static Boolean isDirty(Object world) {
+        MethodHandle dirty = HANDLES.get(world.getClass()).dirty;
+        if (dirty == null) return null;
+        try {
+            return (boolean) dirty.invokeExact(world);
+        } catch (Throwable ignored) { }
+        return null;
+    }
+
+    /**
+     * Saves the world by running its save method on the world's thread, then waits (on the caller's thread)
+     * for that call and, if the save method is asynchronous, for the future it returned.
+     */
+    static void save(World world) throws Exception {
+        MethodHandle save = HANDLES.get(world.getClass()).save;
+        if (save == null) throw new UnsupportedOperationException("No save hook on " + world.getClass().getName());
+        CompletableFuture<Object> invoked = new CompletableFuture<>();
+        world.execute(() -> {
+            try {
+                invoked.complete((Object) save.invokeExact((Object) world));
+            } catch (Throwable t) {
+                invoked.completeExceptionally(t);
+            }
+        });
+        Object result;
+        try {
+            result = invoked.get(SAVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+        if (result instanceof Future) {
+            ((Future<?>) result).get(SAVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /** Directory the world persists to, or null when the world class does not expose one. */
+    static File saveDirectory(Object world) {
+        MethodHandle path = HANDLES.get(world.getClass()).path;
+        if (path == null) return null;
+        try {
+            Object result = (Object) path.invokeExact(world);
+            if (result instanceof Path) return ((Path) result).toFile();
+            if (result instanceof File) return (File) result;
+        } catch (Throwable ignored) { }
+        return null;
+    }
+
+    /**
+     * Total size of files under {@code dir} modified at or after {@code sinceMs}, looking at no more than
+     * {@link #MAX_SCANNED_FILES} files; returns -1 when the limit cut the walk short.
+     */
+    static long bytesWrittenSince(File dir, long sinceMs) {
+        if (dir == null) return 0;
+        int[] budget = {MAX_SCANNED_FILES};
+        long total = walk(dir, sinceMs, budget);
+        return budget[0] < 0 ? -1 : total;
+    }
+
+    private static long walk(File dir, long sinceMs, int[] budget) {
+        File[] children = dir.listFiles();
+        if (children == null) return 0;
+        long total = 0;
+        for (File child : children) {
+            if (--budget[0] < 0) return total;
+            if (child.isDirectory()) {
+                total += walk(child, sinceMs, budget);
+            } else if (child.lastModified() >= sinceMs) {
+                total += child.length();
+            }
+        }
+        return total;
+    }
+
+    private static MethodHandle first(Class<?> type, String[] names) {
+        for (String name : names) {
+            try {
+                Method m = type.getMethod(name);
+                return MethodHandles.publicLookup().unreflect(m).asType(OBJECT_GETTER);
+            } catch (Exception ignored) { }
+        }
+        return null;
+    }
+
+    private static MethodHandle flag(Class<?> type, String[] names) {
+        for (String name : names) {
+            try {
+                Method m = type.getMethod(name);
+                if (m.getReturnType() != boolean.class) continue;
+                return MethodHandles.publicLookup().unreflect(m).asType(FLAG_GETTER);
+            } catch (Exception ignored) { }
+        }
+        return null;
+    }
+
+    private static final class Handles {
+        final MethodHandle save;
+        final MethodHandle path;
+        final MethodHandle dirty;
+
+        Handles(Class<?> type) {
+            this.save = first(type, SAVE_METHODS);
+            this.path = first(type, PATH_METHODS);
+            this.dirty = flag(type, DIRTY_METHODS);
+        }
+    }
+}
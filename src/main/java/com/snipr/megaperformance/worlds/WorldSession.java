@@ -0,0 +1,152 @@
+package com.snipr.megaperformance.worlds;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.snipr.megaperformance.config.MegaPerformanceConfig;
+import com.snipr.megaperformance.optimizers.EntityOptimizer;
+import com.snipr.megaperformance.optimizers.Hotspots;
+import com.snipr.megaperformance.scheduler.BudgetedTask;
+import com.snipr.megaperformance.scheduler.CooperativeScheduler;
+
+import java.util.ArrayList;
+
+/**
+ * Optimizer state for a single loaded world. Each session owns its own {@link EntityOptimizer} and
+ * {@link CooperativeScheduler}, so slices are queued on that world's executor and a busy world only
+ * delays its own optimizer work.
+ */
+public class WorldSession {
+
+    private final String name;
+    private final World world;
+    private final HytaleLogger logger;
+    private final EntityOptimizer entityOptimizer = new EntityOptimizer();
+    private final CooperativeScheduler scheduler;
+
+    /** Merged sections for this world, swapped as one reference so a slice never mixes two reloads. */
+    private volatile Settings settings;
+
+    WorldSession(String name, World world, MegaPerformanceConfig config, HytaleLogger logger) {
+        this.name = name;
+        this.world = world;
+        this.logger = logger;
+        this.scheduler = new CooperativeScheduler(() -> world, logger);
+        applyConfig(config);
+        scheduler.register(new BudgetedTask() {
+            @Override
+            public void runSlice(World w, long deadline) {
+                Settings current = settings;
+                entityOptimizer.runSlice(w, current.entities, current.bundled, scheduler.pacer().pressure(), deadline, logger);
+            }
+
+            @Override
+            public boolean hasBacklog() {
+                return entityOptimizer.hasBacklog();
+            }
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Whether the world has unsaved changes, as reported by the world itself. Worlds that do not expose
+     * their save state always count as dirty, so they keep being saved every cycle.
+     */
+    public boolean isDirty() {
+        Boolean dirty = WorldSaveAccess.isDirty(world);
+        return dirty == null || dirty;
+    }
+
+    /** Current load pressure of this world, 0 (keeping up) to 1 (a full tick behind). */
+    public double pressure() {
+        return scheduler.pacer().pressure();
+    }
+
+    /** Most crowded chunks as of this world's last optimizer pass. */
+    public Hotspots hotspots() {
+        return entityOptimizer.hotspots();
+    }
+
+    public double smoothedLagMs() {
+        return scheduler.pacer().smoothedLagMs();
+    }
+
+    void applyConfig(MegaPerformanceConfig config) {
+        MegaPerformanceConfig.WorldOverride override = config.worldOverrides != null
+            ? config.worldOverrides.get(name)
+            : null;
+        this.settings = new Settings(merge(config.entities, override, name), merge(config.bundled, override));
+        scheduler.configure(override != null && override.optimizerBudgetMicros != null
+            ? override.optimizerBudgetMicros
+            : config.tick.optimizerBudgetMicros, config.tick);
+    }
+
+    void start() {
+        scheduler.start();
+    }
+
+    void stop() {
+        scheduler.stop();
+    }
+
+    void restoreActivation() {
+        try {
+            world.execute(entityOptimizer::restoreActivation);
+        } catch (Exception e) {
+            logger.atWarning().withCause(e).log("Failed to restore entity AI in world %s", name);
+        }
+    }
+
+    /** Applies the world's override and keeps only the policy rules that target this world. */
+    private static MegaPerformanceConfig.Entities merge(MegaPerformanceConfig.Entities base,
+                                                        MegaPerformanceConfig.WorldOverride override, String world) {
+        if (override == null && (base.policies == null || base.policies.isEmpty())) return base;
+        if (override == null) override = new MegaPerformanceConfig.WorldOverride();
+        MegaPerformanceConfig.Entities merged = new MegaPerformanceConfig.Entities();
+        merged.softCapPerChunk = override.softCapPerChunk != null ? override.softCapPerChunk : base.softCapPerChunk;
+        merged.distantAiSkipEvery = override.distantAiSkipEvery != null ? override.distantAiSkipEvery : base.distantAiSkipEvery;
+        merged.nearRadius = override.nearRadius != null ? override.nearRadius : base.nearRadius;
+        merged.midRadius = override.midRadius != null ? override.midRadius : base.midRadius;
+        merged.hibernateAfterSeconds = base.hibernateAfterSeconds;
+        merged.mergeItems = base.mergeItems;
+        merged.itemMergeRadius = base.itemMergeRadius;
+        merged.typeWeights = base.typeWeights;
+        merged.protectedTypes = base.protectedTypes;
+        merged.policies = new ArrayList<>();
+        if (base.policies != null) {
+            for (MegaPerformanceConfig.PolicyRule rule : base.policies) {
+                if (rule != null && appliesTo(rule, world)) merged.policies.add(rule);
+            }
+        }
+        return merged;
+    }
+
+    private static boolean appliesTo(MegaPerformanceConfig.PolicyRule rule, String world) {
+        return rule.world == null || rule.world.equals("*") || rule.world.equalsIgnoreCase(world);
+    }
+
+    private static MegaPerformanceConfig.Bundled merge(MegaPerformanceConfig.Bundled base,
+                                                       MegaPerformanceConfig.WorldOverride override) {
+        if (override == null) return base;
+        MegaPerformanceConfig.Bundled merged = new MegaPerformanceConfig.Bundled();
+        merged.aggressiveTrimming = override.aggressiveTrimming != null ? override.aggressiveTrimming : base.aggressiveTrimming;
+        merged.lowAiDepth = override.lowAiDepth != null ? override.lowAiDepth : base.lowAiDepth;
+        return merged;
+    }
+
+    private static final class Settings {
+        final MegaPerformanceConfig.Entities entities;
+        final MegaPerformanceConfig.Bundled bundled;
+
+        Settings(MegaPerformanceConfig.Entities entities, MegaPerformanceConfig.Bundled bundled) {
+            this.entities = entities;
+            this.bundled = bundled;
+        }
+    }
+}